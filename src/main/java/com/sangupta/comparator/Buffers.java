@@ -0,0 +1,123 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Helpers for feeding array slices and {@link ByteBuffer}s to the parsers
+ * without copying them.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+final class Buffers {
+
+	private Buffers() {
+		// utility class
+	}
+
+	/**
+	 * Check that a slice lies within an array.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if it does not
+	 */
+	static void checkSlice(int arrayLength, int offset, int length) {
+		if(offset < 0 || length < 0 || offset > arrayLength - length) {
+			throw new IndexOutOfBoundsException("Slice [" + offset + ", " + offset + " + " + length + ") out of bounds for length " + arrayLength);
+		}
+	}
+
+	/**
+	 * Return a stream over the remaining bytes of the given buffer, reading the
+	 * backing array directly if the buffer has an accessible one. The position
+	 * of the buffer is left untouched.
+	 *
+	 */
+	static InputStream newInputStream(ByteBuffer buffer) {
+		if(buffer.hasArray()) {
+			return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		}
+
+		return new ByteBufferInputStream(buffer.duplicate());
+	}
+
+	/**
+	 * A stream over the remaining bytes of a buffer, for direct and read-only
+	 * buffers whose bytes cannot be reached through an array.
+	 *
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			if(!this.buffer.hasRemaining()) {
+				return -1;
+			}
+
+			return this.buffer.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			checkSlice(bytes.length, offset, length);
+			if(length == 0) {
+				return 0;
+			}
+
+			if(!this.buffer.hasRemaining()) {
+				return -1;
+			}
+
+			length = Math.min(length, this.buffer.remaining());
+			this.buffer.get(bytes, offset, length);
+			return length;
+		}
+
+		@Override
+		public long skip(long count) {
+			if(count <= 0) {
+				return 0;
+			}
+
+			int skipped = (int) Math.min(count, this.buffer.remaining());
+			this.buffer.position(this.buffer.position() + skipped);
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return this.buffer.remaining();
+		}
+
+	}
+
+}
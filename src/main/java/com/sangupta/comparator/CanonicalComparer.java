@@ -0,0 +1,148 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Compare two canonical forms as produced by {@link JSONCanonicalizer},
+ * {@link XMLCanonicalizer} or {@link HTMLCanonicalizer}. As canonical forms
+ * are unique for equivalent markup, a plain byte comparison suffices.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class CanonicalComparer {
+
+	/**
+	 * Size of the chunks in which streams are compared
+	 */
+	private static final int CHUNK_SIZE = 8192;
+
+	/**
+	 * Compare two canonical forms held in memory.
+	 *
+	 * @param canonical1
+	 *            the first canonical form
+	 *
+	 * @param canonical2
+	 *            the second canonical form
+	 *
+	 * @return <code>true</code> if the two forms are identical,
+	 *         <code>false</code> otherwise
+	 */
+	public static boolean compareCanonical(byte[] canonical1, byte[] canonical2) {
+		if(canonical1 == null || canonical2 == null) {
+			return false;
+		}
+
+		// intrinsified by the JIT into a vectorized comparison
+		return Arrays.equals(canonical1, canonical2);
+	}
+
+	/**
+	 * Compare two canonical forms read from streams, such as stored canonical
+	 * files, chunk by chunk. Reading stops at the first difference.
+	 *
+	 * @param stream1
+	 *            the first canonical form
+	 *
+	 * @param stream2
+	 *            the second canonical form
+	 *
+	 * @return <code>true</code> if the two forms are identical,
+	 *         <code>false</code> otherwise
+	 *
+	 * @throws IOException
+	 *             if there is an error reading data
+	 */
+	public static boolean compareCanonical(InputStream stream1, InputStream stream2) throws IOException {
+		if(stream1 == null || stream2 == null) {
+			return false;
+		}
+
+		if(stream1 == stream2) {
+			return true;
+		}
+
+		byte[] chunk1 = new byte[CHUNK_SIZE];
+		byte[] chunk2 = new byte[CHUNK_SIZE];
+
+		do {
+			int read1 = readFully(stream1, chunk1);
+			int read2 = readFully(stream2, chunk2);
+
+			if(read1 != read2 || Mismatch.mismatch(chunk1, 0, chunk2, 0, read1) >= 0) {
+				return false;
+			}
+
+			if(read1 < CHUNK_SIZE) {
+				return true;
+			}
+		} while(true);
+	}
+
+	/**
+	 * Compare two canonical forms read from streams.
+	 *
+	 * @param stream1
+	 *            the first canonical form
+	 *
+	 * @param stream2
+	 *            the second canonical form
+	 *
+	 * @return <code>True</code> if the two forms are identical,
+	 *         <code>False</code> otherwise, and <code>null</code> if something
+	 *         fails
+	 */
+	public static Boolean compareCanonicalQuietly(InputStream stream1, InputStream stream2) {
+		try {
+			return compareCanonical(stream1, stream2);
+		} catch (IOException e) {
+			// eat up
+		}
+
+		return null;
+	}
+
+	/**
+	 * Fill the given buffer from the stream, unless the stream ends first.
+	 *
+	 * @return the number of bytes read
+	 */
+	private static int readFully(InputStream stream, byte[] buffer) throws IOException {
+		int total = 0;
+		while(total < buffer.length) {
+			int read = stream.read(buffer, total, buffer.length - total);
+			if(read < 0) {
+				break;
+			}
+
+			total += read;
+		}
+
+		return total;
+	}
+
+}
@@ -0,0 +1,1098 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * A compact, read-only tree of a JSON document, for when a tree is genuinely
+ * needed - such as comparing many documents against one baseline. Where a
+ * {@link com.fasterxml.jackson.databind.JsonNode} tree has an object per value
+ * and a map per JSON object, this document is held in a handful of flat arrays:
+ *
+ * <ul>
+ * <li>nodes are numbered in document order, with a type per node</li>
+ * <li>scalar values are offsets into the original text, which is never
+ * copied</li>
+ * <li>object keys are ids from a shared {@link JSONKeyPool}</li>
+ * <li>children of every container sit in one shared index array, object
+ * members sorted by key id so that two objects match in a single pass</li>
+ * </ul>
+ *
+ * Numbers compare by value, as with {@link JSONComparer#compareJsonNumerically(String, String)}.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class CompactJSONDocument {
+
+	static final int OBJECT = 1;
+
+	static final int ARRAY = 2;
+
+	static final int STRING = 3;
+
+	static final int NUMBER = 4;
+
+	static final int TRUE = 5;
+
+	static final int FALSE = 6;
+
+	static final int NULL = 7;
+
+	/**
+	 * Flag set on strings that contain escape sequences
+	 */
+	static final int ESCAPED = 8;
+
+	static final int TYPE_MASK = 7;
+
+	/**
+	 * The source text the document was built over
+	 */
+	final CharSequence text;
+
+	final JSONKeyPool pool;
+
+	final int count;
+
+	/**
+	 * Type of each node, possibly with the {@link #ESCAPED} flag
+	 */
+	final int[] types;
+
+	/**
+	 * For scalars, the offset of the value in {@link #text} in the high
+	 * 32 bits and its length in the low 32 bits; for containers, the offset
+	 * of the children in {@link #children} and the number of children.
+	 */
+	final long[] spans;
+
+	/**
+	 * Key id of each node that is an object member, <code>-1</code> otherwise
+	 */
+	final int[] keys;
+
+	/**
+	 * Node indexes of the children of all containers
+	 */
+	final int[] children;
+
+	/**
+	 * Index just past the last node of the subtree rooted at each node, as
+	 * nodes are numbered in document order
+	 */
+	final int[] ends;
+
+	private CompactJSONDocument(CharSequence text, JSONKeyPool pool, int count, int[] types, long[] spans, int[] keys, int[] children, int[] ends) {
+		this.text = text;
+		this.pool = pool;
+		this.count = count;
+		this.types = types;
+		this.spans = spans;
+		this.keys = keys;
+		this.children = children;
+		this.ends = ends;
+	}
+
+	/**
+	 * Build a document from the given JSON string, using the default key pool.
+	 * The default pool holds the keys it takes for the life of the process, up
+	 * to {@link JSONKeyPool#DEFAULT_LIMIT} of them. Once it is full, a document
+	 * with keys it does not hold gets a pool of its own, as told by
+	 * {@link #getKeyPool()}: it is compared with documents over other pools by
+	 * looking its keys up in theirs, and never in parallel. Pass a pool of your
+	 * own to {@link #parse(String, JSONKeyPool)} to avoid both.
+	 *
+	 * @param json
+	 *            the JSON representation
+	 *
+	 * @return the document
+	 *
+	 * @throws JsonParseException
+	 *             if the JSON is malformed
+	 */
+	public static CompactJSONDocument parse(String json) throws JsonParseException {
+		return parse(json, JSONKeyPool.DEFAULT);
+	}
+
+	/**
+	 * Build a document from the given JSON string. The string is read in
+	 * place, and not copied.
+	 *
+	 * @param json
+	 *            the JSON representation
+	 *
+	 * @param pool
+	 *            the pool to intern object keys into
+	 *
+	 * @return the document
+	 *
+	 * @throws JsonParseException
+	 *             if the JSON is malformed
+	 */
+	public static CompactJSONDocument parse(String json, JSONKeyPool pool) throws JsonParseException {
+		return parse(json, 0, json.length(), pool);
+	}
+
+	/**
+	 * Build a document over a slice of the given buffer, using the default key
+	 * pool as with {@link #parse(String)}. The buffer is not copied and must not
+	 * be modified afterwards.
+	 *
+	 * @param chars
+	 *            the buffer holding the JSON representation
+	 *
+	 * @param offset
+	 *            the offset of the JSON in the buffer
+	 *
+	 * @param length
+	 *            the length of the JSON
+	 *
+	 * @return the document
+	 *
+	 * @throws JsonParseException
+	 *             if the JSON is malformed
+	 */
+	public static CompactJSONDocument parse(char[] chars, int offset, int length) throws JsonParseException {
+		return parse(chars, offset, length, JSONKeyPool.DEFAULT);
+	}
+
+	/**
+	 * Build a document over a slice of the given buffer. The buffer is not
+	 * copied and must not be modified afterwards.
+	 *
+	 * @param chars
+	 *            the buffer holding the JSON representation
+	 *
+	 * @param offset
+	 *            the offset of the JSON in the buffer
+	 *
+	 * @param length
+	 *            the length of the JSON
+	 *
+	 * @param pool
+	 *            the pool to intern object keys into
+	 *
+	 * @return the document
+	 *
+	 * @throws JsonParseException
+	 *             if the JSON is malformed
+	 */
+	public static CompactJSONDocument parse(char[] chars, int offset, int length, JSONKeyPool pool) throws JsonParseException {
+		return parse(CharBuffer.wrap(chars), offset, length, pool);
+	}
+
+	private static CompactJSONDocument parse(CharSequence text, int offset, int length, JSONKeyPool pool) throws JsonParseException {
+		CompactJSONDocument document = new Builder(text, offset, offset + length, pool).build();
+		if(document == null) {
+			// the pool is full, and the document has keys it does not hold
+			document = new Builder(text, offset, offset + length, new JSONKeyPool()).build();
+		}
+
+		return document;
+	}
+
+	/**
+	 * @return the number of values in the document
+	 */
+	public int size() {
+		return this.count;
+	}
+
+	/**
+	 * @return the pool the object keys of the document are interned in: the
+	 *         pool it was parsed over, or a pool of its own if that one was full
+	 */
+	public JSONKeyPool getKeyPool() {
+		return this.pool;
+	}
+
+	/**
+	 * Check if this document is equivalent to the given one: object member order,
+	 * white space and the notation of strings and numbers do not matter.
+	 *
+	 * @param other
+	 *            the document to compare with
+	 *
+	 * @return <code>true</code> if the two documents represent the same
+	 *         object, <code>false</code> otherwise.
+	 */
+	public boolean equivalentTo(CompactJSONDocument other) {
+		if(other == null) {
+			return false;
+		}
+
+		if(other == this) {
+			return true;
+		}
+
+		return new Matcher(this, other).matches(0, 0);
+	}
+
+	/**
+	 * Check if this document is equivalent to the given one, splitting large
+	 * arrays and objects into chunks that are compared in parallel on the given
+	 * pool. Outstanding chunks are cancelled as soon as one finds a difference.
+	 * Documents, or parts of them, smaller than a threshold are compared on the
+	 * calling thread.
+	 *
+	 * @param other
+	 *            the document to compare with
+	 *
+	 * @param forkJoinPool
+	 *            the pool to run the comparison on
+	 *
+	 * @return <code>true</code> if the two documents represent the same
+	 *         object, <code>false</code> otherwise.
+	 */
+	public boolean equivalentTo(CompactJSONDocument other, ForkJoinPool forkJoinPool) {
+		if(other == null) {
+			return false;
+		}
+
+		if(other == this) {
+			return true;
+		}
+
+		if(other.pool != this.pool || this.count < JSONParallelTask.SEQUENTIAL_THRESHOLD || !JSONParallelTask.isShallowEqual(this, other, 0, 0)) {
+			return equivalentTo(other);
+		}
+
+		return forkJoinPool.invoke(new JSONParallelTask(this, other, 0, 0, 0, this.length(0), new AtomicBoolean()));
+	}
+
+	int type(int node) {
+		return this.types[node] & TYPE_MASK;
+	}
+
+	int start(int node) {
+		return (int) (this.spans[node] >>> 32);
+	}
+
+	int length(int node) {
+		return (int) this.spans[node];
+	}
+
+	/**
+	 * Compares the nodes of two documents. Holds the scratch state of one comparison.
+	 * Nodes still to be compared are kept on a stack rather than recursed into,
+	 * so that nesting is only bound by memory.
+	 *
+	 */
+	static final class Matcher {
+
+		private final CompactJSONDocument document1;
+
+		private final CompactJSONDocument document2;
+
+		private final JSONNumbers.Decimal decimal1 = new JSONNumbers.Decimal();
+
+		private final JSONNumbers.Decimal decimal2 = new JSONNumbers.Decimal();
+
+		private char[] scratch1;
+
+		private char[] scratch2;
+
+		/**
+		 * Pairs of nodes still to be compared, one node of each document
+		 */
+		private int[] pairs = new int[64];
+
+		private int pairCount;
+
+		Matcher(CompactJSONDocument document1, CompactJSONDocument document2) {
+			this.document1 = document1;
+			this.document2 = document2;
+		}
+
+		boolean matches(int node1, int node2) {
+			this.pairCount = 0;
+			push(node1, node2);
+
+			while(this.pairCount > 0) {
+				this.pairCount -= 2;
+				if(!matchesNode(this.pairs[this.pairCount], this.pairs[this.pairCount + 1])) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * Match two nodes, leaving the children of containers to be matched.
+		 *
+		 */
+		private boolean matchesNode(int node1, int node2) {
+			final CompactJSONDocument d1 = this.document1;
+			final CompactJSONDocument d2 = this.document2;
+
+			int type = d1.type(node1);
+			if(type != d2.type(node2)) {
+				return false;
+			}
+
+			switch(type) {
+				case OBJECT:
+					if(d1.length(node1) != d2.length(node2)) {
+						return false;
+					}
+
+					if(d1.pool != d2.pool) {
+						return pushMembersByKey(node1, node2);
+					}
+
+					return pushChildren(node1, node2);
+
+				case ARRAY:
+					if(d1.length(node1) != d2.length(node2)) {
+						return false;
+					}
+
+					return pushChildren(node1, node2);
+
+				case STRING:
+					return matchesStrings(node1, node2);
+
+				case NUMBER:
+					return JSONNumbers.equalValue(d1.text, d1.start(node1), d1.length(node1), this.decimal1, d2.text, d2.start(node2), d2.length(node2), this.decimal2);
+
+				default:
+					return true;
+			}
+		}
+
+		/**
+		 * Pair the children of two containers up by position. Members of objects
+		 * are sorted by key id, and so are paired this way when both documents
+		 * share a pool.
+		 *
+		 * @return <code>false</code> if the keys of two object members differ
+		 */
+		private boolean pushChildren(int node1, int node2) {
+			final CompactJSONDocument d1 = this.document1;
+			final CompactJSONDocument d2 = this.document2;
+
+			final int base1 = d1.start(node1);
+			final int base2 = d2.start(node2);
+			final int count = d1.length(node1);
+			final boolean object = d1.type(node1) == OBJECT;
+
+			for(int index = 0; index < count; index++) {
+				int child1 = d1.children[base1 + index];
+				int child2 = d2.children[base2 + index];
+
+				if(object && d1.keys[child1] != d2.keys[child2]) {
+					return false;
+				}
+
+				push(child1, child2);
+			}
+
+			return true;
+		}
+
+		/**
+		 * Pair the members of two objects up by key, for documents over different
+		 * pools: each key of the first object is looked up in the pool of the
+		 * second, and the id found among the members of the second object, which
+		 * are sorted by key id.
+		 *
+		 * @return <code>false</code> if a key of one object is not in the other
+		 */
+		private boolean pushMembersByKey(int node1, int node2) {
+			final CompactJSONDocument d1 = this.document1;
+			final CompactJSONDocument d2 = this.document2;
+
+			final int count = d1.length(node1);
+			final int base1 = d1.start(node1);
+			final int base2 = d2.start(node2);
+			boolean[] used = new boolean[count];
+
+			for(int index1 = 0; index1 < count; index1++) {
+				int child1 = d1.children[base1 + index1];
+				String key = d1.pool.getKey(d1.keys[child1]);
+				int id = d2.pool.findId(key, 0, key.length());
+				if(id < 0) {
+					return false;
+				}
+
+				// the first member with the id, then the first of those not yet used
+				int low = 0;
+				int high = count;
+				while(low < high) {
+					int middle = (low + high) >>> 1;
+					if(d2.keys[d2.children[base2 + middle]] < id) {
+						low = middle + 1;
+					} else {
+						high = middle;
+					}
+				}
+
+				while(low < count && used[low] && d2.keys[d2.children[base2 + low]] == id) {
+					low++;
+				}
+
+				if(low == count || d2.keys[d2.children[base2 + low]] != id) {
+					return false;
+				}
+
+				push(child1, d2.children[base2 + low]);
+				used[low] = true;
+			}
+
+			return true;
+		}
+
+		private void push(int node1, int node2) {
+			if(this.pairCount + 2 > this.pairs.length) {
+				this.pairs = Arrays.copyOf(this.pairs, this.pairs.length * 2);
+			}
+
+			this.pairs[this.pairCount++] = node1;
+			this.pairs[this.pairCount++] = node2;
+		}
+
+		private boolean matchesStrings(int node1, int node2) {
+			final CompactJSONDocument d1 = this.document1;
+			final CompactJSONDocument d2 = this.document2;
+
+			boolean escaped1 = (d1.types[node1] & ESCAPED) != 0;
+			boolean escaped2 = (d2.types[node2] & ESCAPED) != 0;
+
+			if(!escaped1 && !escaped2) {
+				return JSONNumbers.equalText(d1.text, d1.start(node1), d1.length(node1), d2.text, d2.start(node2), d2.length(node2));
+			}
+
+			// only strings with escape sequences are ever decoded
+			this.scratch1 = ensureCapacity(this.scratch1, d1.length(node1));
+			this.scratch2 = ensureCapacity(this.scratch2, d2.length(node2));
+
+			int length1 = Builder.unescape(d1.text, d1.start(node1), d1.length(node1), this.scratch1);
+			int length2 = Builder.unescape(d2.text, d2.start(node2), d2.length(node2), this.scratch2);
+
+			return JSONNumbers.equalText(this.scratch1, 0, length1, this.scratch2, 0, length2);
+		}
+
+		private static char[] ensureCapacity(char[] buffer, int length) {
+			if(buffer == null || buffer.length < length) {
+				return new char[Math.max(length, 64)];
+			}
+
+			return buffer;
+		}
+
+	}
+
+	/**
+	 * A small parser filling in the flat arrays. Open containers are tracked on
+	 * an explicit stack rather than by recursion, so that nesting is only bound
+	 * by memory. Children of open containers are collected on a stack and moved
+	 * into the shared children array when the container closes, so that they
+	 * stay contiguous.
+	 *
+	 * The input must be strict JSON, other than for comments.
+	 *
+	 */
+	private static final class Builder {
+
+		private final CharSequence text;
+
+		private final int end;
+
+		private final JSONKeyPool pool;
+
+		private final JSONNumbers.Decimal decimal = new JSONNumbers.Decimal();
+
+		private int position;
+
+		/**
+		 * Whether the last string read contained escape sequences
+		 */
+		private boolean escaped;
+
+		private int count;
+
+		private int[] types = new int[64];
+
+		private long[] spans = new long[64];
+
+		private int[] keys = new int[64];
+
+		private int[] ends = new int[64];
+
+		private int[] children = new int[64];
+
+		private int childCount;
+
+		private int[] stack = new int[64];
+
+		private int stackSize;
+
+		/**
+		 * Open containers, innermost last
+		 */
+		private int[] containers = new int[16];
+
+		/**
+		 * Size of {@link #stack} when each open container was opened
+		 */
+		private int[] marks = new int[16];
+
+		/**
+		 * Key id of the last member of each open object
+		 */
+		private int[] lastKeys = new int[16];
+
+		/**
+		 * Whether the members of each open object arrived out of key id order
+		 */
+		private boolean[] unsorted = new boolean[16];
+
+		private int depth;
+
+		private long[] sortScratch = new long[16];
+
+		private char[] keyScratch = new char[64];
+
+		/**
+		 * A view of {@link #keyScratch}, to look unescaped keys up with
+		 */
+		private CharBuffer keyView = CharBuffer.wrap(this.keyScratch);
+
+		Builder(CharSequence text, int offset, int end, JSONKeyPool pool) {
+			this.text = text;
+			this.position = offset;
+			this.end = end;
+			this.pool = pool;
+		}
+
+		/**
+		 * @return the document, or <code>null</code> if the pool is full
+		 */
+		CompactJSONDocument build() throws JsonParseException {
+			if(!parseValues()) {
+				return null;
+			}
+
+			skipWhitespace();
+			if(this.position < this.end) {
+				throw error("Unexpected content after the document");
+			}
+
+			return new CompactJSONDocument(this.text, this.pool, this.count, this.types, this.spans, this.keys, Arrays.copyOf(this.children, this.childCount), this.ends);
+		}
+
+		/**
+		 * Parse the document value, and all values nested in it.
+		 *
+		 * @return <code>false</code> if the pool is full
+		 */
+		private boolean parseValues() throws JsonParseException {
+			// key id of the member whose value is read next, -1 outside objects
+			int key = -1;
+
+			do {
+				skipWhitespace();
+				char c = peek();
+
+				int node;
+				if(c == '{' || c == '[') {
+					node = newNode(c == '{' ? OBJECT : ARRAY);
+					this.keys[node] = key;
+					this.position++;
+
+					skipWhitespace();
+					if(peek() != (c == '{' ? '}' : ']')) {
+						open(node);
+						key = c == '{' ? parseMemberKey() : -1;
+						if(key == -2) {
+							return false;
+						}
+
+						continue;
+					}
+
+					this.position++;
+					closeContainer(node, this.stackSize, false);
+				} else {
+					node = parseScalar(c);
+					this.keys[node] = key;
+				}
+
+				// the value is complete: add it to its container, and close the
+				// containers it completes in turn
+				do {
+					this.ends[node] = this.count;
+					if(this.depth == 0) {
+						return true;
+					}
+
+					final int top = this.depth - 1;
+					final int container = this.containers[top];
+					final boolean object = this.types[container] == OBJECT;
+
+					push(node);
+					if(object) {
+						if(this.keys[node] < this.lastKeys[top]) {
+							this.unsorted[top] = true;
+						}
+
+						this.lastKeys[top] = this.keys[node];
+					}
+
+					skipWhitespace();
+					char separator = peek();
+					this.position++;
+					if(separator == ',') {
+						key = object ? parseMemberKey() : -1;
+						if(key == -2) {
+							return false;
+						}
+
+						break;
+					}
+
+					if(separator != (object ? '}' : ']')) {
+						throw error(object ? "Expected ',' or '}'" : "Expected ',' or ']'");
+					}
+
+					this.depth = top;
+					closeContainer(container, this.marks[top], this.unsorted[top]);
+					node = container;
+				} while(true);
+			} while(true);
+		}
+
+		private int parseScalar(char c) throws JsonParseException {
+			switch(c) {
+				case '"':
+					long span = parseString();
+					int node = newNode(this.escaped ? STRING | ESCAPED : STRING);
+					this.spans[node] = span;
+					return node;
+
+				case 't':
+					return parseLiteral("true", TRUE);
+
+				case 'f':
+					return parseLiteral("false", FALSE);
+
+				case 'n':
+					return parseLiteral("null", NULL);
+
+				default:
+					if(c == '-' || (c >= '0' && c <= '9')) {
+						return parseNumber();
+					}
+
+					throw error("Unexpected character '" + c + "'");
+			}
+		}
+
+		/**
+		 * Read an object key and the colon after it.
+		 *
+		 * @return the key id, or <code>-2</code> if the pool is full
+		 */
+		private int parseMemberKey() throws JsonParseException {
+			skipWhitespace();
+			if(peek() != '"') {
+				throw error("Expected object key");
+			}
+
+			int key = parseKey();
+			if(key < 0) {
+				return -2;
+			}
+
+			skipWhitespace();
+			if(peek() != ':') {
+				throw error("Expected ':'");
+			}
+
+			this.position++;
+			return key;
+		}
+
+		private void open(int node) {
+			if(this.depth == this.containers.length) {
+				int capacity = this.depth * 2;
+				this.containers = Arrays.copyOf(this.containers, capacity);
+				this.marks = Arrays.copyOf(this.marks, capacity);
+				this.lastKeys = Arrays.copyOf(this.lastKeys, capacity);
+				this.unsorted = Arrays.copyOf(this.unsorted, capacity);
+			}
+
+			this.containers[this.depth] = node;
+			this.marks[this.depth] = this.stackSize;
+			this.lastKeys[this.depth] = -1;
+			this.unsorted[this.depth] = false;
+			this.depth++;
+		}
+
+		/**
+		 * Move the children collected since <code>mark</code> into the shared
+		 * children array, sorting object members by key id if needed.
+		 *
+		 */
+		private void closeContainer(int node, int mark, boolean sortByKey) {
+			final int size = this.stackSize - mark;
+
+			if(sortByKey) {
+				if(this.sortScratch.length < size) {
+					this.sortScratch = new long[Math.max(size, this.sortScratch.length * 2)];
+				}
+
+				for(int index = 0; index < size; index++) {
+					int child = this.stack[mark + index];
+					this.sortScratch[index] = ((long) this.keys[child] << 32) | child;
+				}
+
+				Arrays.sort(this.sortScratch, 0, size);
+				for(int index = 0; index < size; index++) {
+					this.stack[mark + index] = (int) this.sortScratch[index];
+				}
+			}
+
+			if(this.childCount + size > this.children.length) {
+				this.children = Arrays.copyOf(this.children, Math.max(this.children.length * 2, this.childCount + size));
+			}
+
+			System.arraycopy(this.stack, mark, this.children, this.childCount, size);
+			this.spans[node] = ((long) this.childCount << 32) | size;
+			this.childCount += size;
+			this.stackSize = mark;
+		}
+
+		/**
+		 * Read the string at the current position, setting {@link #escaped}
+		 * if it contains escape sequences.
+		 *
+		 * @return the offset and length of the content, without the quotes
+		 */
+		private long parseString() throws JsonParseException {
+			final int start = ++this.position;
+			this.escaped = false;
+
+			while(this.position < this.end) {
+				char c = this.text.charAt(this.position);
+				if(c == '"') {
+					return ((long) start << 32) | (this.position++ - start);
+				}
+
+				if(c < ' ') {
+					throw error("Unescaped control character in string");
+				}
+
+				if(c == '\\') {
+					this.escaped = true;
+					this.position++;
+					parseEscape();
+					continue;
+				}
+
+				this.position++;
+			}
+
+			throw error("Unterminated string");
+		}
+
+		/**
+		 * Check the escape sequence at the current position, just after the
+		 * backslash, and move past it.
+		 *
+		 */
+		private void parseEscape() throws JsonParseException {
+			switch(peek()) {
+				case '"':
+				case '\\':
+				case '/':
+				case 'b':
+				case 'f':
+				case 'n':
+				case 'r':
+				case 't':
+					this.position++;
+					return;
+
+				case 'u':
+					if(this.position + 4 >= this.end) {
+						throw error("Unexpected end of input");
+					}
+
+					for(int digit = 1; digit <= 4; digit++) {
+						if(Character.digit(this.text.charAt(this.position + digit), 16) < 0) {
+							throw error("Malformed unicode escape");
+						}
+					}
+
+					this.position += 5;
+					return;
+
+				default:
+					throw error("Unrecognized escape sequence '\\" + this.text.charAt(this.position) + "'");
+			}
+		}
+
+		private int parseKey() throws JsonParseException {
+			long span = parseString();
+			int start = (int) (span >>> 32);
+			int length = (int) span;
+
+			// the pool answers -1 when it is full
+			if(!this.escaped) {
+				return this.pool.getId(this.text, start, length);
+			}
+
+			if(this.keyScratch.length < length) {
+				this.keyScratch = new char[length];
+				this.keyView = CharBuffer.wrap(this.keyScratch);
+			}
+
+			return this.pool.getId(this.keyView, 0, unescape(this.text, start, length, this.keyScratch));
+		}
+
+		/**
+		 * Read the number at the current position, which must follow the JSON
+		 * grammar: an optional minus sign, an integer part without leading zeros,
+		 * and optional fraction and exponent parts with at least one digit each.
+		 *
+		 */
+		private int parseNumber() throws JsonParseException {
+			final int start = this.position;
+			if(this.text.charAt(this.position) == '-') {
+				this.position++;
+			}
+
+			if(peek() == '0') {
+				this.position++;
+			} else {
+				skipDigits();
+			}
+
+			if(this.position < this.end && this.text.charAt(this.position) == '.') {
+				this.position++;
+				skipDigits();
+			}
+
+			if(this.position < this.end && (this.text.charAt(this.position) == 'e' || this.text.charAt(this.position) == 'E')) {
+				this.position++;
+				if(peek() == '+' || peek() == '-') {
+					this.position++;
+				}
+
+				skipDigits();
+			}
+
+			int length = this.position - start;
+			if(!this.decimal.read(this.text, start, length)) {
+				throw error("Malformed number");
+			}
+
+			int node = newNode(NUMBER);
+			this.spans[node] = ((long) start << 32) | length;
+			return node;
+		}
+
+		/**
+		 * Move past one or more digits.
+		 *
+		 */
+		private void skipDigits() throws JsonParseException {
+			final int start = this.position;
+			while(this.position < this.end && this.text.charAt(this.position) >= '0' && this.text.charAt(this.position) <= '9') {
+				this.position++;
+			}
+
+			if(this.position == start) {
+				throw error("Malformed number");
+			}
+		}
+
+		private int parseLiteral(String literal, int type) throws JsonParseException {
+			final int length = literal.length();
+			if(this.position + length > this.end) {
+				throw error("Unexpected end of input");
+			}
+
+			for(int index = 0; index < length; index++) {
+				if(this.text.charAt(this.position + index) != literal.charAt(index)) {
+					throw error("Unexpected literal");
+				}
+			}
+
+			int node = newNode(type);
+			this.spans[node] = ((long) this.position << 32) | length;
+			this.position += length;
+			return node;
+		}
+
+		private int newNode(int type) {
+			if(this.count == this.types.length) {
+				int capacity = this.count * 2;
+				this.types = Arrays.copyOf(this.types, capacity);
+				this.spans = Arrays.copyOf(this.spans, capacity);
+				this.keys = Arrays.copyOf(this.keys, capacity);
+				this.ends = Arrays.copyOf(this.ends, capacity);
+			}
+
+			int node = this.count++;
+			this.types[node] = type;
+			this.spans[node] = 0;
+			this.keys[node] = -1;
+			return node;
+		}
+
+		private void push(int child) {
+			if(this.stackSize == this.stack.length) {
+				this.stack = Arrays.copyOf(this.stack, this.stackSize * 2);
+			}
+
+			this.stack[this.stackSize++] = child;
+		}
+
+		private char peek() throws JsonParseException {
+			if(this.position >= this.end) {
+				throw error("Unexpected end of input");
+			}
+
+			return this.text.charAt(this.position);
+		}
+
+		/**
+		 * Skip white space and comments, which are allowed as with
+		 * {@link JsonParser.Feature#ALLOW_COMMENTS}.
+		 *
+		 */
+		private void skipWhitespace() throws JsonParseException {
+			while(this.position < this.end) {
+				char c = this.text.charAt(this.position);
+				if(c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+					this.position++;
+					continue;
+				}
+
+				if(c != '/' || this.position + 1 >= this.end) {
+					return;
+				}
+
+				char next = this.text.charAt(this.position + 1);
+				if(next == '/') {
+					while(this.position < this.end && this.text.charAt(this.position) != '\n') {
+						this.position++;
+					}
+				} else if(next == '*') {
+					this.position += 2;
+					while(this.position + 1 < this.end && !(this.text.charAt(this.position) == '*' && this.text.charAt(this.position + 1) == '/')) {
+						this.position++;
+					}
+
+					if(this.position + 1 >= this.end) {
+						throw error("Unterminated comment");
+					}
+
+					this.position += 2;
+				} else {
+					return;
+				}
+			}
+		}
+
+		private JsonParseException error(String message) {
+			return new JsonParseException((JsonParser) null, message + " at offset " + this.position);
+		}
+
+		/**
+		 * Decode the escape sequences of a string into the given buffer, which
+		 * must be at least as long as the string. The sequences have been
+		 * checked while parsing.
+		 *
+		 * @return the length of the decoded string
+		 */
+		static int unescape(CharSequence text, int start, int length, char[] target) {
+			final int end = start + length;
+			int written = 0;
+
+			for(int index = start; index < end; index++) {
+				char c = text.charAt(index);
+				if(c != '\\' || index + 1 >= end) {
+					target[written++] = c;
+					continue;
+				}
+
+				c = text.charAt(++index);
+				switch(c) {
+					case 'b':
+						target[written++] = '\b';
+						break;
+
+					case 'f':
+						target[written++] = '\f';
+						break;
+
+					case 'n':
+						target[written++] = '\n';
+						break;
+
+					case 'r':
+						target[written++] = '\r';
+						break;
+
+					case 't':
+						target[written++] = '\t';
+						break;
+
+					case 'u':
+						if(index + 4 < end) {
+							int code = 0;
+							for(int digit = 1; digit <= 4; digit++) {
+								code = (code << 4) | Character.digit(text.charAt(index + digit), 16);
+							}
+
+							target[written++] = (char) code;
+							index += 4;
+							break;
+						}
+
+						target[written++] = c;
+						break;
+
+					default:
+						// quote, backslash and solidus stand for themselves
+						target[written++] = c;
+				}
+			}
+
+			return written;
+		}
+
+	}
+
+}
@@ -0,0 +1,364 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.xml.sax.SAXException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/**
+ * Memoizes the results of comparisons, so that comparing the same pair of
+ * inputs again answers without parsing them. Results are keyed by a 128-bit
+ * fingerprint of both inputs and the kind and options of the comparison.
+ *
+ * The most recently used results are kept in memory, up to a maximum number.
+ * Optionally, all results are also appended to a memory-mapped file, which
+ * survives restarts: open the cache over the same file again to reuse them.
+ * A file of results from comparers of an older version, which may have
+ * compared differently, is emptied when opened. A file holds at most some 126
+ * million results; further results are held in memory only.
+ * Comparisons that fail with an exception are not cached.
+ *
+ * The cache is thread-safe; comparisons themselves run outside of any lock.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class ComparisonCache implements Closeable {
+
+	private static final long SEED = 0x636f6d7061726572L;
+
+	/**
+	 * The version of the comparers, as far as their results go: raise it with
+	 * any change that makes a comparison return another result, so that files
+	 * of older results are discarded. <code>2</code> pairs repeated HTML
+	 * attributes one to one.
+	 */
+	static final int RESULTS_VERSION = 2;
+
+	private static final int HTML = 1;
+
+	private static final int JSON = 2;
+
+	private static final int JSON_NUMERIC = 3;
+
+	private static final int XML = 4;
+
+	private final Map<Key, Boolean> results;
+
+	private final MappedResultFile file;
+
+	private long hits;
+
+	private long misses;
+
+	/**
+	 * Create a cache holding results in memory only.
+	 *
+	 * @param maxEntries
+	 *            the maximum number of results held in memory
+	 */
+	public ComparisonCache(int maxEntries) {
+		this.results = newResultMap(maxEntries);
+		this.file = null;
+	}
+
+	/**
+	 * Create a cache holding the most recent results in memory, and all results
+	 * in the given file.
+	 *
+	 * @param maxEntries
+	 *            the maximum number of results held in memory
+	 *
+	 * @param file
+	 *            the file to store results in, created if needed
+	 *
+	 * @throws IOException
+	 *             if the file cannot be opened, is not a result file, or is in
+	 *             use by another cache
+	 */
+	public ComparisonCache(int maxEntries, File file) throws IOException {
+		if(file == null) {
+			throw new IllegalArgumentException("File cannot be null");
+		}
+
+		this.results = newResultMap(maxEntries);
+		this.file = new MappedResultFile(file, RESULTS_VERSION);
+	}
+
+	/**
+	 * Compare two HTML strings, as with
+	 * {@link HTMLComparer#compareHtml(String, String)}.
+	 *
+	 * @param html1
+	 *            the first HTML string
+	 *
+	 * @param html2
+	 *            the second HTML string
+	 *
+	 * @return <code>true</code> if the HTML structure and values are the same,
+	 *         <code>false</code> otherwise
+	 *
+	 * @throws IOException
+	 *             if the result cannot be stored in the file
+	 */
+	public boolean compareHtml(String html1, String html2) throws IOException {
+		if(html1 == null || html2 == null) {
+			return false;
+		}
+
+		Key key = key(HTML, 0, html1, html2);
+		Boolean result = get(key);
+		if(result != null) {
+			return result;
+		}
+
+		return put(key, HTMLComparer.compareHtml(html1, html2));
+	}
+
+	/**
+	 * Compare two JSON strings, as with
+	 * {@link JSONComparer#compareJson(String, String)}.
+	 *
+	 * @param json1
+	 *            the first representation
+	 *
+	 * @param json2
+	 *            the second representation
+	 *
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 *
+	 * @throws JsonProcessingException
+	 *             if something fails
+	 *
+	 * @throws IOException
+	 *             if something fails, or the result cannot be stored in the file
+	 */
+	public boolean compareJson(String json1, String json2) throws JsonProcessingException, IOException {
+		if(json1 == null || json2 == null) {
+			return false;
+		}
+
+		Key key = key(JSON, 0, json1, json2);
+		Boolean result = get(key);
+		if(result != null) {
+			return result;
+		}
+
+		return put(key, JSONComparer.compareJson(json1, json2));
+	}
+
+	/**
+	 * Compare two JSON strings, treating numbers as equal when their values are
+	 * equal within the given epsilon, as with
+	 * {@link JSONComparer#compareJsonNumerically(String, String, double)}.
+	 *
+	 * @param json1
+	 *            the first representation
+	 *
+	 * @param json2
+	 *            the second representation
+	 *
+	 * @param epsilon
+	 *            the largest difference between two numbers that are equal
+	 *
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 *
+	 * @throws IOException
+	 *             if something fails, or the result cannot be stored in the file
+	 */
+	public boolean compareJsonNumerically(String json1, String json2, double epsilon) throws IOException {
+		if(json1 == null || json2 == null) {
+			return false;
+		}
+
+		Key key = key(JSON_NUMERIC, Double.doubleToLongBits(epsilon), json1, json2);
+		Boolean result = get(key);
+		if(result != null) {
+			return result;
+		}
+
+		return put(key, JSONComparer.compareJsonNumerically(json1, json2, epsilon));
+	}
+
+	/**
+	 * Compare two XML strings, as with
+	 * {@link XMLComparer#compareXml(String, String)}.
+	 *
+	 * @param xml1
+	 *            the first representation
+	 *
+	 * @param xml2
+	 *            the second representation
+	 *
+	 * @return <code>true</code> if XMLs are markup equivalent,
+	 *         <code>false</code> otherwise.
+	 *
+	 * @throws SAXException
+	 *             if something fails
+	 *
+	 * @throws IOException
+	 *             if something fails, or the result cannot be stored in the file
+	 *
+	 * @throws ParserConfigurationException
+	 *             if something fails
+	 */
+	public boolean compareXml(String xml1, String xml2) throws SAXException, IOException, ParserConfigurationException {
+		if(xml1 == null || xml2 == null) {
+			return false;
+		}
+
+		Key key = key(XML, 0, xml1, xml2);
+		Boolean result = get(key);
+		if(result != null) {
+			return result;
+		}
+
+		return put(key, XMLComparer.compareXml(xml1, xml2));
+	}
+
+	/**
+	 * @return the number of comparisons answered from the cache
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * @return the number of comparisons that had to be run
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * @return the number of results held in memory
+	 */
+	public synchronized int size() {
+		return this.results.size();
+	}
+
+	/**
+	 * Close the file of the cache, if any, writing out all results. A cache with
+	 * a file cannot be used afterwards: comparisons fail with an
+	 * {@link IOException}. Closing again has no effect.
+	 *
+	 */
+	@Override
+	public void close() throws IOException {
+		if(this.file != null) {
+			this.file.close();
+		}
+	}
+
+	private synchronized Boolean get(Key key) throws IOException {
+		Boolean result = this.results.get(key);
+		if(result == null && this.file != null) {
+			result = this.file.get(key.high, key.low);
+			if(result != null) {
+				this.results.put(key, result);
+			}
+		}
+
+		if(result != null) {
+			this.hits++;
+		} else {
+			this.misses++;
+		}
+
+		return result;
+	}
+
+	private synchronized boolean put(Key key, boolean result) throws IOException {
+		this.results.put(key, result);
+		if(this.file != null) {
+			this.file.put(key.high, key.low, result);
+		}
+
+		return result;
+	}
+
+	private static Key key(int kind, long options, String input1, String input2) {
+		long[] hash = new Fingerprint(SEED).update(kind).update(options).update(input1).update(input2).finish();
+		return new Key(hash[0], hash[1]);
+	}
+
+	private static Map<Key, Boolean> newResultMap(final int maxEntries) {
+		if(maxEntries < 0) {
+			throw new IllegalArgumentException("Maximum number of entries cannot be negative");
+		}
+
+		return new LinkedHashMap<Key, Boolean>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+				return size() > maxEntries;
+			}
+
+		};
+	}
+
+	/**
+	 * The fingerprint of a comparison
+	 *
+	 */
+	private static final class Key {
+
+		private final long high;
+
+		private final long low;
+
+		Key(long high, long low) {
+			this.high = high;
+			this.low = low;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if(!(other instanceof Key)) {
+				return false;
+			}
+
+			Key key = (Key) other;
+			return this.high == key.high && this.low == key.low;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (this.high ^ (this.high >>> 32));
+		}
+
+	}
+
+}
@@ -0,0 +1,475 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.htmlparser.jericho.Source;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+
+/**
+ * Watches pairs of baseline and output files, and compares each output with
+ * its baseline again whenever the output changes. Baselines are parsed once
+ * and kept in memory until they change themselves; only the pairs whose files
+ * changed are compared again. Each changed file is compared once it has been
+ * quiet for the debounce delay, so that a file being written is compared once
+ * it is complete; writes to other files do not hold it back.
+ *
+ * The kind of comparison is chosen by the extension of the baseline:
+ * <code>.json</code>, <code>.xml</code>, or <code>.html</code> and
+ * <code>.htm</code>.
+ *
+ * Pairs are registered with {@link #watch(Path, Path)}; {@link #run()} then
+ * compares all pairs, and keeps comparing changed ones until the watcher is
+ * closed or the running thread is interrupted. Results are reported to the
+ * {@link Listener} from the running thread, as each comparison completes.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class ComparisonWatcher implements Runnable, Closeable {
+
+	/**
+	 * The default time, in milliseconds, files must be quiet for before they
+	 * are compared
+	 */
+	public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final Listener listener;
+
+	private final long debounceMillis;
+
+	private final WatchService watchService;
+
+	private final List<Pair> pairs = new ArrayList<Pair>();
+
+	/**
+	 * The parsed baselines, by path
+	 */
+	private final Map<Path, Object> baselines = new HashMap<Path, Object>();
+
+	private final Set<Path> directories = new HashSet<Path>();
+
+	/**
+	 * Create a watcher using the default debounce delay.
+	 *
+	 * @param listener
+	 *            the listener to report results to
+	 *
+	 * @throws IOException
+	 *             if the file system cannot be watched
+	 */
+	public ComparisonWatcher(Listener listener) throws IOException {
+		this(listener, DEFAULT_DEBOUNCE_MILLIS);
+	}
+
+	/**
+	 * Create a watcher.
+	 *
+	 * @param listener
+	 *            the listener to report results to
+	 *
+	 * @param debounceMillis
+	 *            the time, in milliseconds, files must be quiet for before they
+	 *            are compared
+	 *
+	 * @throws IOException
+	 *             if the file system cannot be watched
+	 */
+	public ComparisonWatcher(Listener listener, long debounceMillis) throws IOException {
+		if(listener == null) {
+			throw new IllegalArgumentException("Listener cannot be null");
+		}
+
+		if(debounceMillis < 0) {
+			throw new IllegalArgumentException("Debounce delay cannot be negative");
+		}
+
+		this.listener = listener;
+		this.debounceMillis = debounceMillis;
+		this.watchService = FileSystems.getDefault().newWatchService();
+	}
+
+	/**
+	 * Watch the given output file, comparing it with the given baseline file.
+	 * A pair registered while the watcher runs is compared on its first change.
+	 *
+	 * @param baseline
+	 *            the expected file
+	 *
+	 * @param output
+	 *            the actual file
+	 *
+	 * @throws IOException
+	 *             if the directories of the files cannot be watched
+	 */
+	public synchronized void watch(Path baseline, Path output) throws IOException {
+		if(baseline == null || output == null) {
+			throw new IllegalArgumentException("Files cannot be null");
+		}
+
+		baseline = baseline.toAbsolutePath().normalize();
+		output = output.toAbsolutePath().normalize();
+
+		Format format = Format.of(baseline);
+		if(format == null) {
+			throw new IllegalArgumentException("Unknown kind of file: " + baseline);
+		}
+
+		register(baseline.getParent());
+		register(output.getParent());
+
+		this.pairs.add(new Pair(baseline, output, format));
+	}
+
+	/**
+	 * Compare all pairs, then compare pairs again as their files change, until
+	 * the watcher is closed or the running thread is interrupted.
+	 *
+	 */
+	@Override
+	public void run() {
+		compare(pairsOf(null));
+
+		// changed files, by the time they are quiet for long enough, in nanoseconds
+		Map<Path, Long> deadlines = new HashMap<Path, Long>();
+		long debounce = TimeUnit.MILLISECONDS.toNanos(this.debounceMillis);
+		try {
+			while(true) {
+				WatchKey key;
+				if(deadlines.isEmpty()) {
+					key = this.watchService.take();
+				} else {
+					long now = System.nanoTime();
+					Set<Path> quiet = new HashSet<Path>();
+					long wait = Long.MAX_VALUE;
+					for(Map.Entry<Path, Long> entry : deadlines.entrySet()) {
+						long remaining = entry.getValue() - now;
+						if(remaining <= 0) {
+							quiet.add(entry.getKey());
+						} else {
+							wait = Math.min(wait, remaining);
+						}
+					}
+
+					if(!quiet.isEmpty()) {
+						deadlines.keySet().removeAll(quiet);
+						compare(pairsOf(quiet));
+						continue;
+					}
+
+					key = this.watchService.poll(wait, TimeUnit.NANOSECONDS);
+					if(key == null) {
+						continue;
+					}
+				}
+
+				Path directory = (Path) key.watchable();
+				long deadline = System.nanoTime() + debounce;
+				for(WatchEvent<?> event : key.pollEvents()) {
+					if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						// events were lost - any file may have changed
+						for(Path file : allFiles()) {
+							deadlines.put(file, deadline);
+						}
+
+						continue;
+					}
+
+					deadlines.put(directory.resolve((Path) event.context()), deadline);
+				}
+
+				key.reset();
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(ClosedWatchServiceException e) {
+			// closed, we are done
+		}
+	}
+
+	/**
+	 * Stop watching. A running {@link #run()} returns once the comparisons
+	 * underway complete.
+	 *
+	 */
+	@Override
+	public void close() throws IOException {
+		this.watchService.close();
+	}
+
+	private void register(Path directory) throws IOException {
+		if(this.directories.add(directory)) {
+			try {
+				directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			} catch(IOException e) {
+				this.directories.remove(directory);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Return the pairs affected by the given changed files, dropping the parsed
+	 * baselines among them.
+	 *
+	 * @param changed
+	 *            the changed files, or <code>null</code> for all pairs
+	 */
+	private synchronized List<Pair> pairsOf(Set<Path> changed) {
+		if(changed == null) {
+			return new ArrayList<Pair>(this.pairs);
+		}
+
+		this.baselines.keySet().removeAll(changed);
+
+		List<Pair> affected = new ArrayList<Pair>();
+		for(Pair pair : this.pairs) {
+			if(changed.contains(pair.baseline) || changed.contains(pair.output)) {
+				affected.add(pair);
+			}
+		}
+
+		return affected;
+	}
+
+	private synchronized Set<Path> allFiles() {
+		Set<Path> files = new HashSet<Path>();
+		for(Pair pair : this.pairs) {
+			files.add(pair.baseline);
+			files.add(pair.output);
+		}
+
+		return files;
+	}
+
+	private void compare(List<Pair> pairs) {
+		for(Pair pair : pairs) {
+			if(Thread.currentThread().isInterrupted()) {
+				return;
+			}
+
+			boolean equal;
+			try {
+				Object baseline = getBaseline(pair);
+				equal = pair.format.compare(baseline, pair.format.parse(pair.output));
+			} catch(Exception e) {
+				this.listener.failed(pair.baseline, pair.output, e);
+				continue;
+			}
+
+			this.listener.compared(pair.baseline, pair.output, equal);
+		}
+	}
+
+	private Object getBaseline(Pair pair) throws Exception {
+		synchronized(this) {
+			Object baseline = this.baselines.get(pair.baseline);
+			if(baseline != null) {
+				return baseline;
+			}
+		}
+
+		Object baseline = pair.format.parse(pair.baseline);
+		synchronized(this) {
+			this.baselines.put(pair.baseline, baseline);
+		}
+
+		return baseline;
+	}
+
+	/**
+	 * Receives the results of comparisons.
+	 *
+	 */
+	public interface Listener {
+
+		/**
+		 * Called when an output has been compared with its baseline.
+		 *
+		 * @param baseline
+		 *            the expected file
+		 *
+		 * @param output
+		 *            the actual file
+		 *
+		 * @param equal
+		 *            <code>true</code> if the files are equivalent,
+		 *            <code>false</code> otherwise
+		 */
+		public void compared(Path baseline, Path output, boolean equal);
+
+		/**
+		 * Called when an output could not be compared with its baseline, such as
+		 * when either file is missing or malformed.
+		 *
+		 * @param baseline
+		 *            the expected file
+		 *
+		 * @param output
+		 *            the actual file
+		 *
+		 * @param error
+		 *            the failure
+		 */
+		public void failed(Path baseline, Path output, Exception error);
+
+	}
+
+	/**
+	 * An output file and the baseline it is compared with
+	 *
+	 */
+	private static final class Pair {
+
+		private final Path baseline;
+
+		private final Path output;
+
+		private final Format format;
+
+		Pair(Path baseline, Path output, Format format) {
+			this.baseline = baseline;
+			this.output = output;
+			this.format = format;
+		}
+
+	}
+
+	/**
+	 * How files of a kind are parsed and compared
+	 *
+	 */
+	private enum Format {
+
+		HTML {
+
+			@Override
+			Object parse(Path file) throws Exception {
+				InputStream stream = Files.newInputStream(file);
+				try {
+					Source source = new Source(stream);
+					source.fullSequentialParse();
+					return source;
+				} finally {
+					stream.close();
+				}
+			}
+
+			@Override
+			boolean compare(Object baseline, Object output) {
+				return HTMLComparer.compareHtml((Source) baseline, (Source) output);
+			}
+
+		},
+
+		JSON {
+
+			@Override
+			Object parse(Path file) throws Exception {
+				InputStream stream = Files.newInputStream(file);
+				try {
+					JsonNode node = MAPPER.readTree(stream);
+					return node != null ? node : MissingNode.getInstance();
+				} finally {
+					stream.close();
+				}
+			}
+
+			@Override
+			boolean compare(Object baseline, Object output) {
+				return ((JsonNode) baseline).equals(output);
+			}
+
+		},
+
+		XML {
+
+			@Override
+			Object parse(Path file) throws Exception {
+				InputStream stream = Files.newInputStream(file);
+				try {
+					InputSource source = new InputSource(stream);
+					source.setSystemId(file.toUri().toString());
+					return XMLComparer.parse(source);
+				} finally {
+					stream.close();
+				}
+			}
+
+			@Override
+			boolean compare(Object baseline, Object output) {
+				return ((Document) baseline).isEqualNode((Document) output);
+			}
+
+		};
+
+		abstract Object parse(Path file) throws Exception;
+
+		abstract boolean compare(Object baseline, Object output);
+
+		static Format of(Path file) {
+			String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+			if(name.endsWith(".json")) {
+				return JSON;
+			}
+
+			if(name.endsWith(".xml")) {
+				return XML;
+			}
+
+			if(name.endsWith(".html") || name.endsWith(".htm")) {
+				return HTML;
+			}
+
+			return null;
+		}
+
+	}
+
+}
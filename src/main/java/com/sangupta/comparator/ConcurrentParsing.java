@@ -0,0 +1,259 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Shared plumbing for parsing the two sides of a comparison concurrently: both
+ * sides are parsed on a supplied {@link Executor}, and the calling thread waits
+ * for whichever completes first. A failed parse, or a mismatch known from one
+ * side alone, is reported at once; the other parse is then abandoned. Parsers
+ * do not respond to interrupts, so an abandoned parse that has started runs to
+ * completion in the background, while one that has not started never runs.
+ * Either way the source of each parse is closed, as parsing it would.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+final class ConcurrentParsing {
+
+	private ConcurrentParsing() {
+		// utility class
+	}
+
+	/**
+	 * Run both parses on the executor, and wait for them to complete.
+	 *
+	 * @param shapes
+	 *            the shapes the parses publish, checked as each parse completes,
+	 *            or <code>null</code>
+	 *
+	 * @return the results of the parses, or <code>null</code> if the shapes of
+	 *         the two sides are known to differ once one parse completes
+	 *
+	 * @throws ExecutionException
+	 *             if either parse failed, with the failure as the cause
+	 *
+	 * @throws InterruptedIOException
+	 *             if the calling thread is interrupted while waiting, in which
+	 *             case both parses are abandoned
+	 */
+	static <T> Results<T> parseBoth(Executor executor, Parse<T> parse1, Parse<T> parse2, Shapes shapes) throws ExecutionException, InterruptedIOException {
+		CompletionService<T> service = new ExecutorCompletionService<T>(executor);
+
+		Future<T> future1;
+		try {
+			future1 = service.submit(parse1);
+		} catch(RuntimeException e) {
+			parse1.abandon();
+			parse2.abandon();
+			throw e;
+		}
+
+		Future<T> future2;
+		try {
+			future2 = service.submit(parse2);
+		} catch(RuntimeException e) {
+			// let the first parse release what it holds before failing
+			if(!future1.cancel(false)) {
+				awaitQuietly(future1);
+			}
+
+			parse1.abandon();
+			parse2.abandon();
+			throw e;
+		}
+
+		try {
+			for(int completed = 0; completed < 2; completed++) {
+				// throws at once if this parse failed
+				service.take().get();
+
+				if(shapes != null && shapes.isMismatch()) {
+					return null;
+				}
+			}
+
+			return new Results<T>(future1.get(), future2.get());
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the parses to complete");
+		} finally {
+			// abandon the other parse - no-op for a completed one
+			future1.cancel(true);
+			future2.cancel(true);
+			parse1.abandon();
+			parse2.abandon();
+		}
+	}
+
+	private static void awaitQuietly(Future<?> future) {
+		boolean interrupted = false;
+		try {
+			while(true) {
+				try {
+					future.get();
+					return;
+				} catch(InterruptedException e) {
+					interrupted = true;
+				} catch(ExecutionException e) {
+					return;
+				}
+			}
+		} finally {
+			if(interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Return the given failure of a parse as an unchecked exception, for failures
+	 * that are not among the checked exceptions a comparison declares.
+	 *
+	 */
+	static RuntimeException unchecked(Throwable cause) {
+		if(cause instanceof Error) {
+			throw (Error) cause;
+		}
+
+		if(cause instanceof RuntimeException) {
+			return (RuntimeException) cause;
+		}
+
+		return new IllegalStateException(cause);
+	}
+
+	/**
+	 * The parse of one side, which closes its source once done. The source of a
+	 * parse abandoned before it starts is closed by {@link #abandon()} instead:
+	 * whichever thread claims the parse first closes the source, and a parser
+	 * is thus never closed while another thread still reads from it.
+	 *
+	 */
+	abstract static class Parse<T> implements Callable<T> {
+
+		private final AtomicBoolean claimed = new AtomicBoolean();
+
+		@Override
+		public final T call() throws Exception {
+			if(!this.claimed.compareAndSet(false, true)) {
+				// abandoned before it started
+				return null;
+			}
+
+			try {
+				return parse();
+			} finally {
+				close();
+			}
+		}
+
+		/**
+		 * Close the source, unless the parse has started and thus closes it
+		 * itself.
+		 *
+		 */
+		final void abandon() {
+			if(this.claimed.compareAndSet(false, true)) {
+				try {
+					close();
+				} catch(IOException e) {
+					// the result of the comparison is known already
+				}
+			}
+		}
+
+		abstract T parse() throws Exception;
+
+		/**
+		 * Close the source of the parse - called once, whether or not the parse runs.
+		 *
+		 */
+		abstract void close() throws IOException;
+
+	}
+
+	/**
+	 * The shapes of the two sides of a comparison - such as the type of the
+	 * top-level JSON value - published by each parse as soon as it is known,
+	 * so that obviously different documents are told apart before both parses
+	 * complete.
+	 *
+	 */
+	static final class Shapes {
+
+		private final AtomicReferenceArray<Object> shapes = new AtomicReferenceArray<Object>(2);
+
+		/**
+		 * Publish the shape of one side.
+		 *
+		 * @param side
+		 *            <code>0</code> for the first side, <code>1</code> for the second
+		 *
+		 * @return <code>false</code> if the other side is known to have a different shape
+		 */
+		boolean publish(int side, Object shape) {
+			this.shapes.set(side, shape);
+			return !isMismatch();
+		}
+
+		/**
+		 * @return <code>true</code> if both shapes are known and differ
+		 */
+		boolean isMismatch() {
+			Object shape1 = this.shapes.get(0);
+			Object shape2 = this.shapes.get(1);
+
+			return shape1 != null && shape2 != null && !shape1.equals(shape2);
+		}
+
+	}
+
+	/**
+	 * The results of parsing both sides of a comparison
+	 *
+	 */
+	static final class Results<T> {
+
+		final T first;
+
+		final T second;
+
+		Results(T first, T second) {
+			this.first = first;
+			this.second = second;
+		}
+
+	}
+
+}
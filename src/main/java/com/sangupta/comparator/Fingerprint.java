@@ -0,0 +1,167 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+/**
+ * A 128-bit MurmurHash3 (x64 variant) computed incrementally over the UTF-16
+ * code units of a sequence of values - the same hash as over their UTF-16LE
+ * bytes, but without encoding them first.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+final class Fingerprint {
+
+	private static final long C1 = 0x87c37b91114253d5L;
+
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	private long h1;
+
+	private long h2;
+
+	/**
+	 * The block being filled, of 8 code units
+	 */
+	private long k1;
+
+	private long k2;
+
+	private int units;
+
+	/**
+	 * Length hashed so far, in bytes
+	 */
+	private long length;
+
+	Fingerprint(long seed) {
+		this.h1 = seed;
+		this.h2 = seed;
+	}
+
+	/**
+	 * Add the given text, preceded by its length so that consecutive texts
+	 * are told apart from their concatenation.
+	 *
+	 */
+	Fingerprint update(CharSequence text) {
+		final int length = text.length();
+		update(length);
+
+		for(int index = 0; index < length; index++) {
+			add(text.charAt(index));
+		}
+
+		return this;
+	}
+
+	/**
+	 * Add the given value.
+	 *
+	 */
+	Fingerprint update(long value) {
+		add((int) value & 0xffff);
+		add((int) (value >>> 16) & 0xffff);
+		add((int) (value >>> 32) & 0xffff);
+		add((int) (value >>> 48));
+
+		return this;
+	}
+
+	/**
+	 * Complete the hash. No values may be added afterwards.
+	 *
+	 * @return the high 64 bits of the hash in the first element, the low 64 bits in the second
+	 */
+	long[] finish() {
+		if(this.units > 0) {
+			if(this.units > 4) {
+				this.h2 ^= mixK2(this.k2);
+			}
+
+			this.h1 ^= mixK1(this.k1);
+		}
+
+		long a = this.h1 ^ this.length;
+		long b = this.h2 ^ this.length;
+
+		a += b;
+		b += a;
+
+		a = fmix(a);
+		b = fmix(b);
+
+		a += b;
+		b += a;
+
+		return new long[] { a, b };
+	}
+
+	private void add(int unit) {
+		int slot = this.units++;
+		if(slot < 4) {
+			this.k1 |= (long) unit << (16 * slot);
+		} else {
+			this.k2 |= (long) unit << (16 * (slot - 4));
+		}
+
+		this.length += 2;
+
+		if(this.units == 8) {
+			this.h1 ^= mixK1(this.k1);
+			this.h1 = Long.rotateLeft(this.h1, 27);
+			this.h1 += this.h2;
+			this.h1 = this.h1 * 5 + 0x52dce729;
+
+			this.h2 ^= mixK2(this.k2);
+			this.h2 = Long.rotateLeft(this.h2, 31);
+			this.h2 += this.h1;
+			this.h2 = this.h2 * 5 + 0x38495ab5;
+
+			this.k1 = 0;
+			this.k2 = 0;
+			this.units = 0;
+		}
+	}
+
+	private static long mixK1(long k1) {
+		k1 *= C1;
+		k1 = Long.rotateLeft(k1, 31);
+		return k1 * C2;
+	}
+
+	private static long mixK2(long k2) {
+		k2 *= C2;
+		k2 = Long.rotateLeft(k2, 33);
+		return k2 * C1;
+	}
+
+	private static long fmix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+}
@@ -0,0 +1,354 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+import net.htmlparser.jericho.Attribute;
+import net.htmlparser.jericho.Attributes;
+import net.htmlparser.jericho.CharacterReference;
+import net.htmlparser.jericho.Config;
+import net.htmlparser.jericho.EndTag;
+import net.htmlparser.jericho.HTMLElementName;
+import net.htmlparser.jericho.HTMLElements;
+import net.htmlparser.jericho.LoggerProvider;
+import net.htmlparser.jericho.Segment;
+import net.htmlparser.jericho.StartTag;
+import net.htmlparser.jericho.StartTagType;
+import net.htmlparser.jericho.StreamedSource;
+
+/**
+ * Convert an HTML representation into its canonical form, in a single streaming
+ * pass. In the canonical form character references are decoded, runs of white
+ * space in text are collapsed to a single space and white space at the start
+ * and end of the document is dropped, comments are removed, attributes are
+ * sorted by name, and elements that may have content always carry an explicit
+ * end tag (so <code>&lt;hr/&gt;</code> and <code>&lt;hr&gt;&lt;/hr&gt;</code>
+ * canonicalize the same way). White space next to tags is kept, as it separates
+ * words of text. The content of the raw text elements <code>script</code> and
+ * <code>style</code> is kept verbatim, references included.
+ *
+ * Two canonical forms may be compared byte-by-byte using {@link CanonicalComparer}
+ * and may be stored for reuse.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class HTMLCanonicalizer {
+
+	/**
+	 * Turn off the Jericho HTML parser logging.
+	 */
+	static {
+		Config.LoggerProvider = LoggerProvider.DISABLED;
+	}
+
+	/**
+	 * The charset in which the canonical form is emitted
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Elements that never have an end tag, such as <code>br</code>
+	 */
+	private static final Set<String> VOID_ELEMENTS = HTMLElements.getEndTagForbiddenElementNames();
+
+	/**
+	 * Elements whose content is raw text, with no references
+	 */
+	private static final Set<String> RAW_TEXT_ELEMENTS = new HashSet<String>(Arrays.asList(HTMLElementName.SCRIPT, HTMLElementName.STYLE));
+
+	/**
+	 * Sorts attributes by their lower-cased name
+	 */
+	private static final Comparator<Attribute> ATTRIBUTE_ORDER = new Comparator<Attribute>() {
+
+		@Override
+		public int compare(Attribute o1, Attribute o2) {
+			return o1.getKey().compareTo(o2.getKey());
+		}
+
+	};
+
+	/**
+	 * Canonicalize the given HTML string.
+	 *
+	 * @param html
+	 *            the HTML representation
+	 *
+	 * @return the UTF-8 bytes of the canonical form
+	 *
+	 * @throws IOException
+	 *             if something fails
+	 */
+	public static byte[] canonicalize(String html) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(html.length());
+		canonicalize(new StreamedSource(html), out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Canonicalize the HTML read from the given {@link Reader}.
+	 *
+	 * @param reader
+	 *            the HTML representation
+	 *
+	 * @param out
+	 *            the stream to write UTF-8 bytes of the canonical form to
+	 *
+	 * @throws IOException
+	 *             if something fails
+	 */
+	public static void canonicalize(Reader reader, OutputStream out) throws IOException {
+		canonicalize(new StreamedSource(reader), out);
+	}
+
+	/**
+	 * Canonicalize the HTML read from the given {@link InputStream}.
+	 *
+	 * @param stream
+	 *            the HTML representation
+	 *
+	 * @param out
+	 *            the stream to write UTF-8 bytes of the canonical form to
+	 *
+	 * @throws IOException
+	 *             if something fails
+	 */
+	public static void canonicalize(InputStream stream, OutputStream out) throws IOException {
+		canonicalize(new StreamedSource(stream), out);
+	}
+
+	/**
+	 * Canonicalize the segments of the given {@link StreamedSource}. The source
+	 * is closed once done.
+	 *
+	 */
+	private static void canonicalize(StreamedSource source, OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+		StringBuilder text = new StringBuilder();
+
+		// the raw text element we are in, if any
+		String rawText = null;
+		boolean started = false;
+
+		try {
+			source.setCoalescing(true);
+			for(Segment segment : source) {
+				if(rawText != null) {
+					if(segment instanceof EndTag && ((EndTag) segment).getName().equals(rawText)) {
+						writer.write(text.toString());
+						text.setLength(0);
+						rawText = null;
+					} else {
+						text.append(segment);
+						continue;
+					}
+				}
+
+				if(segment instanceof StartTag) {
+					StartTag tag = (StartTag) segment;
+					if(tag.getStartTagType() == StartTagType.COMMENT) {
+						// text around comments is one text
+						continue;
+					}
+
+					started |= writeText(text, !started, false, writer);
+					writeStartTag(tag, writer);
+					started = true;
+
+					if(RAW_TEXT_ELEMENTS.contains(tag.getName()) && !tag.isSyntacticalEmptyElementTag()) {
+						rawText = tag.getName();
+					}
+					continue;
+				}
+
+				if(segment instanceof EndTag) {
+					started |= writeText(text, !started, false, writer);
+					String name = ((EndTag) segment).getName();
+					if(!VOID_ELEMENTS.contains(name)) {
+						writer.write("</");
+						writer.write(name);
+						writer.write('>');
+						started = true;
+					}
+					continue;
+				}
+
+				if(segment instanceof CharacterReference) {
+					((CharacterReference) segment).appendCharTo(text);
+					continue;
+				}
+
+				text.append(segment);
+			}
+
+			if(rawText != null) {
+				// raw text left open at the end of the document
+				writer.write(text.toString());
+			} else {
+				writeText(text, !started, true, writer);
+			}
+		} finally {
+			source.close();
+		}
+
+		writer.flush();
+	}
+
+	private static void writeStartTag(StartTag tag, Writer writer) throws IOException {
+		StartTagType type = tag.getStartTagType();
+		if(type != StartTagType.NORMAL) {
+			// doctype, processing instructions and the like are kept verbatim
+			writer.write(tag.toString());
+			return;
+		}
+
+		String name = tag.getName();
+		writer.write('<');
+		writer.write(name);
+
+		Attributes attributes = tag.getAttributes();
+		if(attributes != null && attributes.size() > 0) {
+			Attribute[] sorted = attributes.toArray(new Attribute[attributes.size()]);
+			Arrays.sort(sorted, ATTRIBUTE_ORDER);
+
+			for(Attribute attribute : sorted) {
+				writer.write(' ');
+				writer.write(attribute.getKey());
+
+				String value = attribute.getValue();
+				if(value != null) {
+					writer.write("=\"");
+					writeEscaped(value, writer);
+					writer.write('"');
+				}
+			}
+		}
+
+		writer.write('>');
+
+		if(tag.isSyntacticalEmptyElementTag() && !VOID_ELEMENTS.contains(name)) {
+			writer.write("</");
+			writer.write(name);
+			writer.write('>');
+		}
+	}
+
+	/**
+	 * Write the pending text with runs of white space collapsed to a single
+	 * space, and reset the buffer.
+	 *
+	 * @param leading
+	 *            <code>true</code> to drop white space at the start of the text,
+	 *            as at the start of the document
+	 *
+	 * @param trailing
+	 *            <code>true</code> to drop white space at the end of the text,
+	 *            as at the end of the document
+	 *
+	 * @return <code>true</code> if anything was written
+	 */
+	private static boolean writeText(StringBuilder text, boolean leading, boolean trailing, Writer writer) throws IOException {
+		final int length = text.length();
+		if(length == 0) {
+			return false;
+		}
+
+		boolean pendingSpace = false;
+		boolean written = !leading;
+		for(int index = 0; index < length; index++) {
+			char c = text.charAt(index);
+			if(isWhitespace(c)) {
+				pendingSpace = written;
+				continue;
+			}
+
+			if(pendingSpace) {
+				writer.write(' ');
+				pendingSpace = false;
+			}
+
+			writeEscaped(c, writer);
+			written = true;
+		}
+
+		if(pendingSpace && !trailing) {
+			writer.write(' ');
+		}
+
+		text.setLength(0);
+		return written;
+	}
+
+	private static void writeEscaped(String value, Writer writer) throws IOException {
+		final int length = value.length();
+		for(int index = 0; index < length; index++) {
+			writeEscaped(value.charAt(index), writer);
+		}
+	}
+
+	private static void writeEscaped(char c, Writer writer) throws IOException {
+		switch(c) {
+			case '&':
+				writer.write("&amp;");
+				return;
+
+			case '<':
+				writer.write("&lt;");
+				return;
+
+			case '>':
+				writer.write("&gt;");
+				return;
+
+			case '"':
+				writer.write("&quot;");
+				return;
+
+			default:
+				writer.write(c);
+		}
+	}
+
+	/**
+	 * White space as defined by HTML: space, tab, line feed, form feed and
+	 * carriage return.
+	 *
+	 */
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r';
+	}
+
+}
@@ -21,20 +21,31 @@
 
 package com.sangupta.comparator;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.List;
-
-import org.apache.commons.lang3.StringEscapeUtils;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import net.htmlparser.jericho.Attribute;
+import net.htmlparser.jericho.Attributes;
 import net.htmlparser.jericho.Config;
+import net.htmlparser.jericho.Element;
+import net.htmlparser.jericho.EndTagType;
+import net.htmlparser.jericho.HTMLElementName;
+import net.htmlparser.jericho.HTMLElements;
 import net.htmlparser.jericho.LoggerProvider;
+import net.htmlparser.jericho.Segment;
 import net.htmlparser.jericho.Source;
 import net.htmlparser.jericho.StartTag;
 import net.htmlparser.jericho.StartTagType;
 import net.htmlparser.jericho.Tag;
+import net.htmlparser.jericho.TextExtractor;
 
 /**
  * Compare two given HTML strings for equality by parsing and matching the text contained
@@ -45,6 +56,11 @@ import net.htmlparser.jericho.Tag;
  */
 public class HTMLComparer {
 	
+	/**
+	 * Elements read as part of the surrounding text, rather than apart from it
+	 */
+	private static final Set<String> INLINE_ELEMENTS = HTMLElements.getInlineLevelElementNames();
+	
 	/**
 	 * Turn off the Jericho HTML parser logging.
 	 */
@@ -189,12 +205,385 @@ public class HTMLComparer {
 			return true;
 		}
 		
+		if(RawPreCheck.markupEquals(RawPreCheck.of(html1), RawPreCheck.of(html2), true)) {
+			// equal but for whitespace around the markup, no need to parse
+			return true;
+		}
+		
 		Source source1 = new Source(html1);
 		Source source2 = new Source(html2);
 		
 		return compareHtml(source1, source2);
 	}
 	
+	/**
+	 * Compare two HTML representations held in slices of byte arrays, such as
+	 * pooled buffers. The slices are read in place, without being copied first;
+	 * the encoding is detected as for streams.
+	 * 
+	 * @param bytes1
+	 *            the array holding the first representation
+	 * 
+	 * @param offset1
+	 *            the offset of the first representation in its array
+	 * 
+	 * @param length1
+	 *            the length of the first representation
+	 * 
+	 * @param bytes2
+	 *            the array holding the second representation
+	 * 
+	 * @param offset2
+	 *            the offset of the second representation in its array
+	 * 
+	 * @param length2
+	 *            the length of the second representation
+	 * 
+	 * @return <code>true</code> if the HTML structure and values are the same,
+	 *         <code>false</code> otherwise
+	 * 
+	 * @throws IOException
+	 *             if there is an error decoding data
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareHtml(byte[] bytes1, int offset1, int length1, byte[] bytes2, int offset2, int length2) throws IOException {
+		if(bytes1 == null) {
+			return false;
+		}
+		
+		if(bytes2 == null) {
+			return false;
+		}
+		
+		Buffers.checkSlice(bytes1.length, offset1, length1);
+		Buffers.checkSlice(bytes2.length, offset2, length2);
+		
+		if(bytes1 == bytes2 && offset1 == offset2 && length1 == length2) {
+			return true;
+		}
+		
+		if(RawPreCheck.markupEquals(RawPreCheck.of(bytes1, offset1, length1), RawPreCheck.of(bytes2, offset2, length2), true)) {
+			// equal but for whitespace around the markup, no need to parse
+			return true;
+		}
+		
+		Source source1 = new Source(new ByteArrayInputStream(bytes1, offset1, length1));
+		Source source2 = new Source(new ByteArrayInputStream(bytes2, offset2, length2));
+		
+		return compareHtml(source1, source2);
+	}
+	
+	/**
+	 * Compare two HTML representations held in slices of char arrays. The
+	 * slices are parsed in place, without being copied to strings first.
+	 * 
+	 * @param chars1
+	 *            the array holding the first representation
+	 * 
+	 * @param offset1
+	 *            the offset of the first representation in its array
+	 * 
+	 * @param length1
+	 *            the length of the first representation
+	 * 
+	 * @param chars2
+	 *            the array holding the second representation
+	 * 
+	 * @param offset2
+	 *            the offset of the second representation in its array
+	 * 
+	 * @param length2
+	 *            the length of the second representation
+	 * 
+	 * @return <code>true</code> if the HTML structure and values are the same,
+	 *         <code>false</code> otherwise
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareHtml(char[] chars1, int offset1, int length1, char[] chars2, int offset2, int length2) {
+		if(chars1 == null) {
+			return false;
+		}
+		
+		if(chars2 == null) {
+			return false;
+		}
+		
+		Buffers.checkSlice(chars1.length, offset1, length1);
+		Buffers.checkSlice(chars2.length, offset2, length2);
+		
+		if(chars1 == chars2 && offset1 == offset2 && length1 == length2) {
+			return true;
+		}
+		
+		if(RawPreCheck.markupEquals(RawPreCheck.of(chars1, offset1, length1), RawPreCheck.of(chars2, offset2, length2), true)) {
+			// equal but for whitespace around the markup, no need to parse
+			return true;
+		}
+		
+		Source source1 = new Source(CharBuffer.wrap(chars1, offset1, length1));
+		Source source2 = new Source(CharBuffer.wrap(chars2, offset2, length2));
+		
+		return compareHtml(source1, source2);
+	}
+	
+	/**
+	 * Compare two HTML representations held in the remaining bytes of the given
+	 * buffers. Buffers backed by an accessible array are read in place; the
+	 * bytes of direct and read-only buffers are read in chunks, never as a
+	 * whole. The positions of the buffers are left untouched.
+	 * 
+	 * @param buffer1
+	 *            the first representation
+	 * 
+	 * @param buffer2
+	 *            the second representation
+	 * 
+	 * @return <code>true</code> if the HTML structure and values are the same,
+	 *         <code>false</code> otherwise
+	 * 
+	 * @throws IOException
+	 *             if there is an error decoding data
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareHtml(ByteBuffer buffer1, ByteBuffer buffer2) throws IOException {
+		if(buffer1 == null) {
+			return false;
+		}
+		
+		if(buffer2 == null) {
+			return false;
+		}
+		
+		if(buffer1 == buffer2) {
+			return true;
+		}
+		
+		if(RawPreCheck.bufferEquals(buffer1, buffer2, false, true)) {
+			// equal but for whitespace around the markup, no need to parse
+			return true;
+		}
+		
+		Source source1 = new Source(Buffers.newInputStream(buffer1));
+		Source source2 = new Source(Buffers.newInputStream(buffer2));
+		
+		return compareHtml(source1, source2);
+	}
+	
+	/**
+	 * Compare the two {@link String} representations of HTML code, parsing both
+	 * on the given executor.
+	 * 
+	 * @param html1
+	 *            the first HTML string
+	 * 
+	 * @param html2
+	 *            the second HTML string
+	 * 
+	 * @param executor
+	 *            the executor to parse the HTML strings on
+	 * 
+	 * @return <code>true</code> if the HTML structure and values are the same,
+	 *         <code>false</code> otherwise
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareHtml(final String html1, final String html2, Executor executor) {
+		if(html1 == null) {
+			return false;
+		}
+		
+		if(html2 == null) {
+			return false;
+		}
+		
+		if(html1 == html2) {
+			return true;
+		}
+		
+		if(RawPreCheck.markupEquals(RawPreCheck.of(html1), RawPreCheck.of(html2), true)) {
+			// equal but for whitespace around the markup, no need to parse
+			return true;
+		}
+		
+		try {
+			return compareHtml(new SourceParse() {
+				
+				@Override
+				Source read() {
+					return new Source(html1);
+				}
+				
+				@Override
+				void close() {
+					// nothing to close
+				}
+				
+			}, new SourceParse() {
+				
+				@Override
+				Source read() {
+					return new Source(html2);
+				}
+				
+				@Override
+				void close() {
+					// nothing to close
+				}
+				
+			}, executor);
+		} catch(IOException e) {
+			// only thrown when the wait for the parses is interrupted
+			throw ConcurrentParsing.unchecked(e);
+		}
+	}
+	
+	/**
+	 * Compare the two {@link Reader} implementations that provide the HTML
+	 * stream, reading and parsing both on the given executor.
+	 * 
+	 * @param reader1
+	 *            the first reader
+	 * 
+	 * @param reader2
+	 *            the second reader
+	 * 
+	 * @param executor
+	 *            the executor to read the readers on
+	 * 
+	 * @return <code>true</code> if the HTML structure and values are the same,
+	 *         <code>false</code> otherwise
+	 * 
+	 * @throws IOException
+	 *             if there is an error reading data
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareHtml(final Reader reader1, final Reader reader2, Executor executor) throws IOException {
+		if(reader1 == null) {
+			return false;
+		}
+		
+		if(reader2 == null) {
+			return false;
+		}
+		
+		return compareHtml(new SourceParse() {
+			
+			@Override
+			Source read() throws IOException {
+				return new Source(reader1);
+			}
+			
+			@Override
+			void close() throws IOException {
+				reader1.close();
+			}
+			
+		}, new SourceParse() {
+			
+			@Override
+			Source read() throws IOException {
+				return new Source(reader2);
+			}
+			
+			@Override
+			void close() throws IOException {
+				reader2.close();
+			}
+			
+		}, executor);
+	}
+	
+	/**
+	 * Compare the two {@link InputStream} implementations that provide the HTML
+	 * stream, reading and parsing both on the given executor.
+	 * 
+	 * @param stream1
+	 *            the first stream
+	 * 
+	 * @param stream2
+	 *            the second stream
+	 * 
+	 * @param executor
+	 *            the executor to read the streams on
+	 * 
+	 * @return <code>true</code> if the HTML structure and values are the same,
+	 *         <code>false</code> otherwise
+	 * 
+	 * @throws IOException
+	 *             if there is an error reading data
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareHtml(final InputStream stream1, final InputStream stream2, Executor executor) throws IOException {
+		if(stream1 == null) {
+			return false;
+		}
+		
+		if(stream2 == null) {
+			return false;
+		}
+		
+		return compareHtml(new SourceParse() {
+			
+			@Override
+			Source read() throws IOException {
+				return new Source(stream1);
+			}
+			
+			@Override
+			void close() throws IOException {
+				stream1.close();
+			}
+			
+		}, new SourceParse() {
+			
+			@Override
+			Source read() throws IOException {
+				return new Source(stream2);
+			}
+			
+			@Override
+			void close() throws IOException {
+				stream2.close();
+			}
+			
+		}, executor);
+	}
+	
+	private static boolean compareHtml(SourceParse parse1, SourceParse parse2, Executor executor) throws IOException {
+		try {
+			ConcurrentParsing.Results<Source> sources = ConcurrentParsing.parseBoth(executor, parse1, parse2, null);
+			return compareHtml(sources.first, sources.second);
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			
+			throw ConcurrentParsing.unchecked(e.getCause());
+		}
+	}
+	
+	/**
+	 * The parse of a whole source, once read.
+	 * 
+	 */
+	private abstract static class SourceParse extends ConcurrentParsing.Parse<Source> {
+		
+		@Override
+		Source parse() throws IOException {
+			Source source = read();
+			source.fullSequentialParse();
+			return source;
+		}
+		
+		abstract Source read() throws IOException;
+		
+	}
+	
 	/**
 	 * Method to compare two given Jericho HTML parser {@link Source} objects
 	 * that represent an AST of the parsed HTML code
@@ -223,7 +612,19 @@ public class HTMLComparer {
 		int index1 = 0;
 		int index2 = 0;
 		
+		// an element of source1 found identical, in source text, to one of source2;
+		// tags within it are known to match those at the same offset in source2
+		int identicalEnd1 = -1;
+		int identicalShift = 0;
+		
+		// the text of the elements being compared, read in place
+		TextCursor content1 = new TextCursor(source1, tags1);
+		TextCursor content2 = new TextCursor(source2, tags2);
+		
 		do {
+			final int tagIndex1 = index1;
+			final int tagIndex2 = index2;
+			
 			Tag tag1 = tags1.get(index1);
 			Tag tag2 = tags2.get(index2);
 			
@@ -255,14 +656,21 @@ public class HTMLComparer {
 					comment = true;
 				}
 				
+				boolean identical = false;
 				if(!comment) {
-					// match all attributes from tag1 to tag2
-					if(!testAttributes(st1, st2)) {
-						return false;
+					if(st1.getBegin() < identicalEnd1 && st2.getBegin() - st1.getBegin() == identicalShift) {
+						// within an element already found identical
+						identical = true;
+					} else if(isIdentical(st1.getElement(), st2.getElement())) {
+						identical = true;
+						identicalEnd1 = st1.getElement().getEnd();
+						identicalShift = st2.getBegin() - st1.getBegin();
 					}
-					
-					// match all attributes from tag2 to tag1
-					if(!testAttributes(st2, st1)) {
+				}
+				
+				if(!comment && !identical) {
+					// match the attributes of both tags
+					if(!testAttributes(st1, st2)) {
 						return false;
 					}
 					
@@ -285,17 +693,16 @@ public class HTMLComparer {
 				}
 
 				// element values
-				String content1 = st1.getElement().getTextExtractor().setIncludeAttributes(false).toString();
-				String content2 = st2.getElement().getTextExtractor().setIncludeAttributes(false).toString();
-				
-				content1 = StringEscapeUtils.unescapeHtml4(content1);
-				content2 = StringEscapeUtils.unescapeHtml4(content2);
-				
-				if(!(content1.equals(content2))) {
-					System.out.println("Content mismatch: tag1=" + tag1.getBegin() + "; tag2=" + tag2.getBegin());
-					System.out.println("C1: " + content1);
-					System.out.println("C2: " + content2);
-					return false;
+				if(!identical) {
+					content1.reset(tagIndex1);
+					content2.reset(tagIndex2);
+					
+					if(!content1.textEquals(content2)) {
+						System.out.println("Content mismatch: tag1=" + tag1.getBegin() + "; tag2=" + tag2.getBegin());
+						System.out.println("C1: " + st1.getElement().getTextExtractor().setIncludeAttributes(false));
+						System.out.println("C2: " + st2.getElement().getTextExtractor().setIncludeAttributes(false));
+						return false;
+					}
 				}
 				
 			}
@@ -316,31 +723,222 @@ public class HTMLComparer {
 	}
 
 	/**
-	 * Test presence of each attribute from <code>st1</code> in <code>st2</code>. Also, the
-	 * values should be identical.
+	 * Reads the text of an element in place, in the source, as the
+	 * {@link TextExtractor} renders it without attributes: entities unescaped,
+	 * whitespace collapsed and trimmed, non-breaking spaces read as spaces, tags
+	 * other than inline elements read as whitespace, and scripts and styles left
+	 * out.
+	 * 
+	 */
+	private static final class TextCursor {
+		
+		private final Source source;
+		
+		private final List<Tag> tags;
+		
+		/**
+		 * The end of the element
+		 */
+		private int end;
+		
+		/**
+		 * The index of the next tag within the element
+		 */
+		private int tagIndex;
+		
+		/**
+		 * The position in the source, as read by {@link HTMLEntities#next(CharSequence, int, int)}
+		 */
+		private int state;
+		
+		/**
+		 * The end of the text before the next tag
+		 */
+		private int textEnd;
+		
+		/**
+		 * Whether whitespace was read since the last char
+		 */
+		private boolean space;
+		
+		/**
+		 * Whether a char other than whitespace was read
+		 */
+		private boolean started;
+		
+		/**
+		 * A char read after collapsed whitespace, to be returned next
+		 */
+		private int pending;
+		
+		TextCursor(Source source, List<Tag> tags) {
+			this.source = source;
+			this.tags = tags;
+		}
+		
+		/**
+		 * Start reading the element of the start tag at the given index.
+		 * 
+		 */
+		void reset(int index) {
+			Tag tag = this.tags.get(index);
+			
+			this.end = ((StartTag) tag).getElement().getEnd();
+			this.tagIndex = index;
+			this.state = tag.getBegin();
+			this.textEnd = tag.getBegin();
+			this.space = false;
+			this.started = false;
+			this.pending = -1;
+		}
+		
+		boolean textEquals(TextCursor other) {
+			while(true) {
+				int ch = next();
+				if(ch != other.next()) {
+					return false;
+				}
+				
+				if(ch < 0) {
+					return true;
+				}
+			}
+		}
+		
+		/**
+		 * @return the next char of the text, or <code>-1</code> at its end
+		 */
+		private int next() {
+			if(this.pending >= 0) {
+				int ch = this.pending;
+				this.pending = -1;
+				return ch;
+			}
+			
+			while(true) {
+				long next = HTMLEntities.next(this.source, this.state, this.textEnd);
+				if(next < 0) {
+					if(!nextTag()) {
+						return -1;
+					}
+					
+					continue;
+				}
+				
+				this.state = (int) next;
+				char ch = (char) (next >>> 32);
+				if(Segment.isWhiteSpace(ch)) {
+					this.space = true;
+					continue;
+				}
+				
+				if(ch == '\u00a0') {
+					// not collapsed, but read as a space
+					ch = ' ';
+				}
+				
+				if(this.space && this.started) {
+					this.space = false;
+					this.pending = ch;
+					return ' ';
+				}
+				
+				this.space = false;
+				this.started = true;
+				return ch;
+			}
+		}
+		
+		/**
+		 * Skip the tag at the end of the text, and the script or style it
+		 * starts.
+		 * 
+		 * @return <code>false</code> at the end of the element
+		 */
+		private boolean nextTag() {
+			if(this.tagIndex >= this.tags.size() || this.tags.get(this.tagIndex).getBegin() >= this.end) {
+				return false;
+			}
+			
+			Tag tag = this.tags.get(this.tagIndex++);
+			int position = tag.getEnd();
+			
+			if(tag.getTagType() == StartTagType.NORMAL || tag.getTagType() == EndTagType.NORMAL) {
+				String name = tag.getName();
+				if(name.equals(HTMLElementName.SCRIPT) || name.equals(HTMLElementName.STYLE)) {
+					if(tag.getTagType() == StartTagType.NORMAL) {
+						position = Math.min(((StartTag) tag).getElement().getEnd(), this.end);
+						while(this.tagIndex < this.tags.size() && this.tags.get(this.tagIndex).getBegin() < position) {
+							this.tagIndex++;
+						}
+					}
+				} else if(!INLINE_ELEMENTS.contains(name) || name.equals(HTMLElementName.BR)) {
+					this.space = true;
+				}
+			} else if(!tag.getTagType().isServerTag()) {
+				// comments, declarations and the like
+				this.space = true;
+			}
+			
+			this.state = position;
+			this.textEnd = this.tagIndex < this.tags.size() ? Math.min(this.tags.get(this.tagIndex).getBegin(), this.end) : this.end;
+			return true;
+		}
+		
+	}
+
+	/**
+	 * Test that both tags have the same attributes, with identical values once
+	 * entities are unescaped, in a single pass over the attributes of
+	 * <code>st1</code>. Values without entities are compared directly in the
+	 * source text.
+	 * 
+	 * Each attribute is paired with a distinct attribute of the same name in the
+	 * other tag, in order. An attribute repeated within a tag thus only matches
+	 * the same attribute repeated as many times, with the values in the same
+	 * order.
 	 * 
 	 * @param st1
 	 * @param st2
 	 * @return
 	 */
 	private static boolean testAttributes(StartTag st1, StartTag st2) {
-		List<Attribute> attributes1 = st1.getAttributes();
+		Attributes attributes1 = st1.getAttributes();
+		Attributes attributes2 = st2.getAttributes();
 		
-		if(attributes1.size() == 0) {
-			return true;
+		if(attributes1 == null || attributes2 == null) {
+			return attributes1 == attributes2;
 		}
 		
-		for(Attribute attribute1 : attributes1) {
-			String value2 = st2.getAttributeValue(attribute1.getName());
-			if(value2 == null) {
-				System.out.println("Attribute not present in stream2: attribute1=" + attribute1.getBegin() + "; tag2=" + st2.getBegin());
-				return false;
+		final int size = attributes1.size();
+		if(size != attributes2.size()) {
+			return false;
+		}
+		
+		// attributes of st2 matched so far, tracked in bits while there are few of them
+		long matched = 0;
+		boolean[] matchedMany = size > 64 ? new boolean[size] : null;
+		
+		for(int index1 = 0; index1 < size; index1++) {
+			Attribute attribute1 = attributes1.get(index1);
+			
+			// attributes are most often in the same order
+			int index2 = index1;
+			while(isMatched(matched, matchedMany, index2) || !attribute1.getKey().equals(attributes2.get(index2).getKey())) {
+				index2 = (index2 + 1) % size;
+				if(index2 == index1) {
+					return false;
+				}
 			}
 			
-			String value1 = StringEscapeUtils.unescapeHtml4(attribute1.getValue());
-			value2 = StringEscapeUtils.unescapeHtml4(value2);
+			if(matchedMany != null) {
+				matchedMany[index2] = true;
+			} else {
+				matched |= 1L << index2;
+			}
 			
-			if(!(value1.equals(value2))) {
+			Attribute attribute2 = attributes2.get(index2);
+			if(!testAttributeValues(attribute1, attribute2)) {
 				System.out.println("Attribute value mismatch: attribute1=" + attribute1.getBegin() + "; tag2=" + st2.getBegin());
 				return false;
 			}
@@ -349,4 +947,56 @@ public class HTMLComparer {
 		return true;
 	}
 	
+	private static boolean isMatched(long matched, boolean[] matchedMany, int index) {
+		if(matchedMany != null) {
+			return matchedMany[index];
+		}
+		
+		return (matched & (1L << index)) != 0;
+	}
+	
+	private static boolean testAttributeValues(Attribute attribute1, Attribute attribute2) {
+		Segment value1 = attribute1.getValueSegment();
+		Segment value2 = attribute2.getValueSegment();
+		
+		if(value1 == null || value2 == null) {
+			// attributes without a value
+			return value1 == value2;
+		}
+		
+		if(!HTMLEntities.hasReference(value1) && !HTMLEntities.hasReference(value2)) {
+			return HTMLEntities.contentEquals(value1, value2);
+		}
+		
+		return HTMLEntities.equalsDecoded(attribute1.getValue(), attribute2.getValue());
+	}
+	
+	/**
+	 * Check if two elements are identical in their source text, and thus match
+	 * in everything this comparison looks at.
+	 * 
+	 * @param element1
+	 * @param element2
+	 * @return
+	 */
+	private static boolean isIdentical(Element element1, Element element2) {
+		if(element1.length() != element2.length()) {
+			return false;
+		}
+		
+		Source source1 = element1.getSource();
+		Source source2 = element2.getSource();
+		
+		final int begin1 = element1.getBegin();
+		final int begin2 = element2.getBegin();
+		final int length = element1.length();
+		for(int index = 0; index < length; index++) {
+			if(source1.charAt(begin1 + index) != source2.charAt(begin2 + index)) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
 }
@@ -0,0 +1,303 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import net.htmlparser.jericho.CharacterEntityReference;
+
+/**
+ * Compares text for equality after unescaping HTML 4 entities, exactly as
+ * {@link org.apache.commons.lang3.StringEscapeUtils#unescapeHtml4(String)}
+ * does, but without allocating: references are decoded on the fly while
+ * walking both texts, and texts without any <code>&amp;</code> are compared
+ * directly.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+final class HTMLEntities {
+
+	/**
+	 * Names of the known entities, without the leading <code>&amp;</code> and
+	 * the trailing <code>;</code>, in an open-addressing table
+	 */
+	private static final String[] NAMES;
+
+	/**
+	 * The character of each entity in {@link #NAMES}
+	 */
+	private static final char[] VALUES;
+
+	/**
+	 * Length of the longest entity name
+	 */
+	private static final int MAX_NAME_LENGTH;
+
+	static {
+		// the HTML 4 entities, as known to the parser - less &apos;, which is
+		// XHTML and not decoded by unescapeHtml4
+		int count = 0;
+		for(int codePoint = 0; codePoint <= Character.MAX_VALUE; codePoint++) {
+			String name = CharacterEntityReference.getName(codePoint);
+			if(name != null && !name.equals("apos")) {
+				count++;
+			}
+		}
+
+		int size = Integer.highestOneBit(count) << 2;
+		NAMES = new String[size];
+		VALUES = new char[size];
+
+		int longest = 0;
+		for(int codePoint = 0; codePoint <= Character.MAX_VALUE; codePoint++) {
+			String name = CharacterEntityReference.getName(codePoint);
+			if(name == null || name.equals("apos")) {
+				continue;
+			}
+
+			longest = Math.max(longest, name.length());
+
+			int slot = hash(name, 0, name.length()) & (size - 1);
+			while(NAMES[slot] != null) {
+				slot = (slot + 1) & (size - 1);
+			}
+
+			NAMES[slot] = name;
+			VALUES[slot] = (char) codePoint;
+		}
+
+		MAX_NAME_LENGTH = longest;
+	}
+
+	private HTMLEntities() {
+		// utility class
+	}
+
+	/**
+	 * Check if two texts are equal once HTML 4 entities are unescaped in both.
+	 *
+	 */
+	static boolean equalsDecoded(CharSequence text1, CharSequence text2) {
+		if(!hasReference(text1) && !hasReference(text2)) {
+			return contentEquals(text1, text2);
+		}
+
+		int state1 = 0;
+		int state2 = 0;
+		while(true) {
+			long next1 = next(text1, state1, text1.length());
+			long next2 = next(text2, state2, text2.length());
+
+			if(next1 < 0 || next2 < 0) {
+				return next1 < 0 && next2 < 0;
+			}
+
+			// compare the chars
+			if((next1 >>> 32) != (next2 >>> 32)) {
+				return false;
+			}
+
+			state1 = (int) next1;
+			state2 = (int) next2;
+		}
+	}
+
+	/**
+	 * Check if the text holds a <code>&amp;</code>, and thus possibly an
+	 * entity.
+	 *
+	 */
+	static boolean hasReference(CharSequence text) {
+		for(int index = 0; index < text.length(); index++) {
+			if(text.charAt(index) == '&') {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Check if two texts hold the same characters.
+	 *
+	 */
+	static boolean contentEquals(CharSequence text1, CharSequence text2) {
+		if(text1 instanceof String && text2 instanceof String) {
+			return text1.equals(text2);
+		}
+
+		final int length = text1.length();
+		if(length != text2.length()) {
+			return false;
+		}
+
+		for(int index = 0; index < length; index++) {
+			if(text1.charAt(index) != text2.charAt(index)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Read the next char of the unescaped text, up to the given end. A
+	 * reference to a supplementary character unescapes to two chars, so the
+	 * position in the text carries a flag, in its sign bit, telling that the low
+	 * surrogate of the reference at the position is to be read next.
+	 *
+	 * @return the char in the high half and the position past it in the low
+	 *         half, or <code>-1</code> at the end of the text
+	 */
+	static long next(CharSequence text, int state, int end) {
+		final int index = state & Integer.MAX_VALUE;
+		if(index >= end) {
+			return -1;
+		}
+
+		char ch = text.charAt(index);
+		if(ch == '&') {
+			long reference = decode(text, index, end);
+			if(reference >= 0) {
+				int codePoint = (int) (reference >>> 32);
+				if(!Character.isSupplementaryCodePoint(codePoint)) {
+					return reference;
+				}
+
+				if(state < 0) {
+					return ((long) Character.lowSurrogate(codePoint) << 32) | (reference & 0xffffffffL);
+				}
+
+				return ((long) Character.highSurrogate(codePoint) << 32) | ((index | Integer.MIN_VALUE) & 0xffffffffL);
+			}
+		}
+
+		return ((long) ch << 32) | (index + 1);
+	}
+
+	/**
+	 * Decode the named or numeric reference starting at the given
+	 * <code>&amp;</code> and ending before the given length of the text.
+	 *
+	 * @return the code point in the high half and the index past the reference
+	 *         in the low half, or <code>-1</code> if there is no reference
+	 */
+	private static long decode(CharSequence text, int index, int length) {
+		if(index + 2 >= length) {
+			return -1;
+		}
+
+		if(text.charAt(index + 1) != '#') {
+			int end = index + 1;
+			int limit = Math.min(length, index + 2 + MAX_NAME_LENGTH);
+			while(end < limit && text.charAt(end) != ';') {
+				end++;
+			}
+
+			if(end == limit || end == index + 1) {
+				return -1;
+			}
+
+			int slot = hash(text, index + 1, end) & (NAMES.length - 1);
+			for(String name = NAMES[slot]; name != null; name = NAMES[slot]) {
+				if(matches(name, text, index + 1, end)) {
+					return ((long) VALUES[slot] << 32) | (end + 1);
+				}
+
+				slot = (slot + 1) & (NAMES.length - 1);
+			}
+
+			return -1;
+		}
+
+		int start = index + 2;
+		int radix = 10;
+		char first = text.charAt(start);
+		if(first == 'x' || first == 'X') {
+			start++;
+			radix = 16;
+		}
+
+		int end = start;
+		long value = 0;
+		while(end < length) {
+			int digit = hexDigit(text.charAt(end));
+			if(digit < 0) {
+				break;
+			}
+
+			if(digit >= radix) {
+				// a hex digit in a decimal reference - not a reference
+				value = Long.MAX_VALUE;
+			} else if(value <= Character.MAX_CODE_POINT) {
+				value = value * radix + digit;
+			}
+
+			end++;
+		}
+
+		if(end == start || end == length || text.charAt(end) != ';' || value > Character.MAX_CODE_POINT) {
+			return -1;
+		}
+
+		return (value << 32) | (end + 1);
+	}
+
+	private static int hexDigit(char ch) {
+		if(ch >= '0' && ch <= '9') {
+			return ch - '0';
+		}
+
+		if(ch >= 'a' && ch <= 'f') {
+			return ch - 'a' + 10;
+		}
+
+		if(ch >= 'A' && ch <= 'F') {
+			return ch - 'A' + 10;
+		}
+
+		return -1;
+	}
+
+	private static int hash(CharSequence text, int start, int end) {
+		int hash = 0;
+		for(int index = start; index < end; index++) {
+			hash = 31 * hash + text.charAt(index);
+		}
+
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean matches(String name, CharSequence text, int start, int end) {
+		if(name.length() != end - start) {
+			return false;
+		}
+
+		for(int index = 0; index < name.length(); index++) {
+			if(name.charAt(index) != text.charAt(start + index)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+}
@@ -0,0 +1,440 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Convert a JSON representation into its canonical form, in a single pass
+ * over the parser tokens. The canonical form has no insignificant white space,
+ * object members sorted by key, normalized string escapes and normalized numbers
+ * (<code>1</code>, <code>1.0</code> and <code>1e0</code> all become <code>1</code>).
+ * Objects holding the same key more than once have no canonical form, and are
+ * rejected with a {@link JsonParseException}. Comments are rejected too, as
+ * with {@link JSONComparer#compareJson(String, String)}.
+ *
+ * Values outside of any object are written out as soon as they are complete.
+ * An object is only written out once it closes, as its members are sorted
+ * then: a document that is a single object is held in memory as a whole,
+ * while the elements of a top-level array are written one at a time.
+ *
+ * Two canonical forms may be compared byte-by-byte using {@link CanonicalComparer}
+ * and may be stored for reuse.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class JSONCanonicalizer {
+
+	/**
+	 * The charset in which the canonical form is emitted
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Shared factory - {@link JsonFactory} is thread-safe once configured
+	 */
+	private static final JsonFactory FACTORY = new JsonFactory();
+
+	/**
+	 * Canonicalize the given JSON string.
+	 *
+	 * @param json
+	 *            the JSON representation
+	 *
+	 * @return the UTF-8 bytes of the canonical form
+	 *
+	 * @throws IOException
+	 *             if something fails
+	 */
+	public static byte[] canonicalize(String json) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(json.length());
+		canonicalize(FACTORY.createParser(json), out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Canonicalize the JSON read from the given {@link Reader}.
+	 *
+	 * @param reader
+	 *            the JSON representation
+	 *
+	 * @param out
+	 *            the stream to write UTF-8 bytes of the canonical form to
+	 *
+	 * @throws IOException
+	 *             if something fails
+	 */
+	public static void canonicalize(Reader reader, OutputStream out) throws IOException {
+		canonicalize(FACTORY.createParser(reader), out);
+	}
+
+	/**
+	 * Canonicalize the JSON read from the given {@link InputStream}.
+	 *
+	 * @param stream
+	 *            the JSON representation
+	 *
+	 * @param out
+	 *            the stream to write UTF-8 bytes of the canonical form to
+	 *
+	 * @throws IOException
+	 *             if something fails
+	 */
+	public static void canonicalize(InputStream stream, OutputStream out) throws IOException {
+		canonicalize(FACTORY.createParser(stream), out);
+	}
+
+	/**
+	 * Canonicalize the first value read from the given {@link JsonParser}. The parser
+	 * is closed once done. If the JSON turns out to be malformed, part of the
+	 * canonical form may already have been written.
+	 *
+	 * @param parser
+	 *            the parser to read tokens from
+	 *
+	 * @param out
+	 *            the stream to write UTF-8 bytes of the canonical form to
+	 *
+	 * @throws IOException
+	 *             if something fails
+	 */
+	public static void canonicalize(JsonParser parser, OutputStream out) throws IOException {
+		Writer writer = new OutputStreamWriter(out, UTF_8);
+		CharOutput output = new CharOutput(writer);
+		try {
+			if(parser.nextToken() == null) {
+				throw new JsonParseException(parser, "No content to canonicalize");
+			}
+
+			writeValue(parser, output);
+		} finally {
+			parser.close();
+		}
+
+		output.drain();
+		writer.flush();
+	}
+
+	/**
+	 * Write the canonical form of the value the parser currently points to.
+	 *
+	 */
+	private static void writeValue(JsonParser parser, CharOutput output) throws IOException {
+		JsonToken token = parser.getCurrentToken();
+		switch(token) {
+			case START_OBJECT:
+				writeObject(parser, output);
+				return;
+
+			case START_ARRAY:
+				output.append('[');
+				boolean first = true;
+				while(parser.nextToken() != JsonToken.END_ARRAY) {
+					if(!first) {
+						output.append(',');
+					}
+
+					first = false;
+					writeValue(parser, output);
+
+					// outside of any object the element is final
+					if(output.objects == 0) {
+						output.drain();
+					}
+				}
+				output.append(']');
+				return;
+
+			case VALUE_STRING:
+				writeString(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength(), output);
+				return;
+
+			case VALUE_NUMBER_INT:
+			case VALUE_NUMBER_FLOAT:
+				writeNumber(parser, output);
+				return;
+
+			case VALUE_TRUE:
+				output.append("true");
+				return;
+
+			case VALUE_FALSE:
+				output.append("false");
+				return;
+
+			case VALUE_NULL:
+				output.append("null");
+				return;
+
+			default:
+				throw new JsonParseException(parser, "Unsupported token for canonicalization: " + token);
+		}
+	}
+
+	/**
+	 * Write an object, sorting the members by key. Members are first written in
+	 * document order and, only if the keys were not already sorted, moved around
+	 * in place.
+	 *
+	 */
+	private static void writeObject(JsonParser parser, CharOutput output) throws IOException {
+		output.append('{');
+		output.objects++;
+		final int bodyStart = output.size;
+
+		String[] keys = new String[8];
+		int[] starts = new int[8];
+		int[] ends = new int[8];
+		int count = 0;
+		boolean sorted = true;
+
+		while(parser.nextToken() == JsonToken.FIELD_NAME) {
+			if(count > 0) {
+				output.append(',');
+			}
+
+			if(count == keys.length) {
+				keys = Arrays.copyOf(keys, count * 2);
+				starts = Arrays.copyOf(starts, count * 2);
+				ends = Arrays.copyOf(ends, count * 2);
+			}
+
+			String key = parser.getCurrentName();
+			if(count > 0) {
+				int order = keys[count - 1].compareTo(key);
+				if(order == 0) {
+					throw duplicateKey(parser, key);
+				}
+
+				if(order > 0) {
+					sorted = false;
+				}
+			}
+
+			keys[count] = key;
+			starts[count] = output.size;
+
+			writeString(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength(), output);
+			output.append(':');
+			parser.nextToken();
+			writeValue(parser, output);
+
+			ends[count] = output.size;
+			count++;
+		}
+
+		if(!sorted) {
+			final String[] memberKeys = keys;
+			Integer[] order = new Integer[count];
+			for(int index = 0; index < count; index++) {
+				order[index] = index;
+			}
+
+			Arrays.sort(order, new Comparator<Integer>() {
+
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					return memberKeys[o1].compareTo(memberKeys[o2]);
+				}
+
+			});
+
+			for(int index = 1; index < count; index++) {
+				if(memberKeys[order[index - 1]].equals(memberKeys[order[index]])) {
+					throw duplicateKey(parser, memberKeys[order[index]]);
+				}
+			}
+
+			char[] body = Arrays.copyOfRange(output.chars, bodyStart, output.size);
+			int position = bodyStart;
+			for(int index = 0; index < count; index++) {
+				if(index > 0) {
+					output.chars[position++] = ',';
+				}
+
+				int member = order[index];
+				int length = ends[member] - starts[member];
+				System.arraycopy(body, starts[member] - bodyStart, output.chars, position, length);
+				position += length;
+			}
+		}
+
+		output.append('}');
+		output.objects--;
+	}
+
+	private static JsonParseException duplicateKey(JsonParser parser, String key) {
+		return new JsonParseException(parser, "Duplicate key, which has no canonical form: " + key);
+	}
+
+	/**
+	 * Write a number in normalized form: integral values are written without a
+	 * fraction or exponent, others as the shortest plain or exponent notation of
+	 * their exact decimal value.
+	 *
+	 */
+	private static void writeNumber(JsonParser parser, CharOutput output) throws IOException {
+		String text = parser.getText();
+		if(parser.getCurrentToken() == JsonToken.VALUE_NUMBER_INT) {
+			int digits = text.charAt(0) == '-' ? text.length() - 1 : text.length();
+			if(digits <= 21) {
+				output.append("-0".equals(text) ? "0" : text);
+				return;
+			}
+		}
+
+		BigDecimal value = new BigDecimal(text);
+		if(value.signum() == 0) {
+			output.append('0');
+			return;
+		}
+
+		value = value.stripTrailingZeros();
+		int exponent = value.precision() - value.scale() - 1;
+		if(exponent >= -6 && exponent < 21) {
+			output.append(value.toPlainString());
+			return;
+		}
+
+		// scientific notation of the form 1.5e+30
+		output.append(value.toString().replace('E', 'e'));
+	}
+
+	/**
+	 * Write a string literal, escaping only what JSON requires to be escaped.
+	 *
+	 */
+	private static void writeString(char[] chars, int offset, int length, CharOutput output) {
+		output.append('"');
+		final int end = offset + length;
+		for(int index = offset; index < end; index++) {
+			char c = chars[index];
+			switch(c) {
+				case '"':
+					output.append("\\\"");
+					break;
+
+				case '\\':
+					output.append("\\\\");
+					break;
+
+				case '\b':
+					output.append("\\b");
+					break;
+
+				case '\f':
+					output.append("\\f");
+					break;
+
+				case '\n':
+					output.append("\\n");
+					break;
+
+				case '\r':
+					output.append("\\r");
+					break;
+
+				case '\t':
+					output.append("\\t");
+					break;
+
+				default:
+					if(c < 0x20) {
+						output.append("\\u00");
+						output.append(Character.forDigit(c >> 4, 16));
+						output.append(Character.forDigit(c & 0xF, 16));
+					} else {
+						output.append(c);
+					}
+			}
+		}
+		output.append('"');
+	}
+
+	/**
+	 * A growable character buffer that allows members written earlier to be moved
+	 * around in place, drained to a writer once what it holds is final.
+	 *
+	 */
+	private static final class CharOutput {
+
+		private final Writer writer;
+
+		char[] chars = new char[256];
+
+		int size;
+
+		/**
+		 * The number of objects open, whose members may still be moved
+		 */
+		int objects;
+
+		CharOutput(Writer writer) {
+			this.writer = writer;
+		}
+
+		/**
+		 * Write out all that is held, which must be final.
+		 *
+		 */
+		void drain() throws IOException {
+			this.writer.write(this.chars, 0, this.size);
+			this.size = 0;
+		}
+
+		void append(char c) {
+			ensureCapacity(1);
+			chars[size++] = c;
+		}
+
+		void append(String text) {
+			final int length = text.length();
+			ensureCapacity(length);
+			text.getChars(0, length, chars, size);
+			size += length;
+		}
+
+		private void ensureCapacity(int extra) {
+			if(size + extra > chars.length) {
+				chars = Arrays.copyOf(chars, Math.max(chars.length * 2, size + extra));
+			}
+		}
+
+	}
+
+}
@@ -21,16 +21,26 @@
 
 package com.sangupta.comparator;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonParser.Feature;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 /**
  * Compare two given JSON strings for equality by parsing and matching the text contained
@@ -41,6 +51,22 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public class JSONComparer {
 	
+	/**
+	 * Shared factory for the streaming comparisons - {@link JsonFactory} is
+	 * thread-safe once configured
+	 */
+	private static final JsonFactory FACTORY = new JsonFactory().enable(Feature.ALLOW_COMMENTS);
+	
+	/**
+	 * Shared mapper for the concurrent comparisons - {@link ObjectMapper} is
+	 * thread-safe once configured
+	 */
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	
+	private static final SmileFactory SMILE_FACTORY = new SmileFactory();
+	
+	private static final CBORFactory CBOR_FACTORY = new CBORFactory();
+	
 	/**
 	 * Compare two JSON string representations.
 	 * 
@@ -68,8 +94,9 @@ public class JSONComparer {
 			return false;
 		}
 		
-		if(json1 == json2) {
-			return true;
+		if(json1 == json2 || RawPreCheck.jsonEquals(RawPreCheck.of(json1), RawPreCheck.of(json2))) {
+			// equal but for whitespace, so both are as well-formed as one of them
+			return checkWellFormed(MAPPER.getFactory().createParser(json1));
 		}
 		
 		JsonFactory factory = new JsonFactory();
@@ -239,4 +266,849 @@ public class JSONComparer {
 		return null;
 	}
 
+	/**
+	 * Compare two JSON representations held in slices of byte arrays, such as
+	 * pooled buffers. The slices are parsed in place, without being copied or
+	 * decoded to strings first; the encoding is detected as for streams.
+	 * 
+	 * @param bytes1
+	 *            the array holding the first representation
+	 * 
+	 * @param offset1
+	 *            the offset of the first representation in its array
+	 * 
+	 * @param length1
+	 *            the length of the first representation
+	 * 
+	 * @param bytes2
+	 *            the array holding the second representation
+	 * 
+	 * @param offset2
+	 *            the offset of the second representation in its array
+	 * 
+	 * @param length2
+	 *            the length of the second representation
+	 * 
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 * 
+	 * @throws JsonProcessingException
+	 *             if something fails
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJson(byte[] bytes1, int offset1, int length1, byte[] bytes2, int offset2, int length2) throws JsonProcessingException, IOException {
+		if(bytes1 == null || bytes2 == null) {
+			return false;
+		}
+		
+		Buffers.checkSlice(bytes1.length, offset1, length1);
+		Buffers.checkSlice(bytes2.length, offset2, length2);
+		
+		JsonFactory factory = MAPPER.getFactory();
+		if((bytes1 == bytes2 && offset1 == offset2 && length1 == length2) || RawPreCheck.jsonEquals(RawPreCheck.of(bytes1, offset1, length1), RawPreCheck.of(bytes2, offset2, length2))) {
+			// equal but for whitespace, so both are as well-formed as one of them
+			return checkWellFormed(factory.createParser(bytes1, offset1, length1));
+		}
+		
+		JsonNode node1 = readTree(factory.createParser(bytes1, offset1, length1));
+		JsonNode node2 = readTree(factory.createParser(bytes2, offset2, length2));
+		
+		return node1.equals(node2);
+	}
+	
+	/**
+	 * Compare two JSON representations held in slices of char arrays. The
+	 * slices are parsed in place, without being copied to strings first.
+	 * 
+	 * @param chars1
+	 *            the array holding the first representation
+	 * 
+	 * @param offset1
+	 *            the offset of the first representation in its array
+	 * 
+	 * @param length1
+	 *            the length of the first representation
+	 * 
+	 * @param chars2
+	 *            the array holding the second representation
+	 * 
+	 * @param offset2
+	 *            the offset of the second representation in its array
+	 * 
+	 * @param length2
+	 *            the length of the second representation
+	 * 
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 * 
+	 * @throws JsonProcessingException
+	 *             if something fails
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJson(char[] chars1, int offset1, int length1, char[] chars2, int offset2, int length2) throws JsonProcessingException, IOException {
+		if(chars1 == null || chars2 == null) {
+			return false;
+		}
+		
+		Buffers.checkSlice(chars1.length, offset1, length1);
+		Buffers.checkSlice(chars2.length, offset2, length2);
+		
+		JsonFactory factory = MAPPER.getFactory();
+		if((chars1 == chars2 && offset1 == offset2 && length1 == length2) || RawPreCheck.jsonEquals(RawPreCheck.of(chars1, offset1, length1), RawPreCheck.of(chars2, offset2, length2))) {
+			// equal but for whitespace, so both are as well-formed as one of them
+			return checkWellFormed(factory.createParser(chars1, offset1, length1));
+		}
+		
+		JsonNode node1 = readTree(factory.createParser(chars1, offset1, length1));
+		JsonNode node2 = readTree(factory.createParser(chars2, offset2, length2));
+		
+		return node1.equals(node2);
+	}
+	
+	/**
+	 * Compare two JSON representations held in the remaining bytes of the given
+	 * buffers. Buffers backed by an accessible array are parsed in place; the
+	 * bytes of direct and read-only buffers are read in chunks, never as a
+	 * whole. The positions of the buffers are left untouched.
+	 * 
+	 * @param buffer1
+	 *            the first representation
+	 * 
+	 * @param buffer2
+	 *            the second representation
+	 * 
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 * 
+	 * @throws JsonProcessingException
+	 *             if something fails
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJson(ByteBuffer buffer1, ByteBuffer buffer2) throws JsonProcessingException, IOException {
+		if(buffer1 == null || buffer2 == null) {
+			return false;
+		}
+		
+		if(buffer1 == buffer2 || RawPreCheck.bufferEquals(buffer1, buffer2, true, false)) {
+			// equal but for whitespace, so both are as well-formed as one of them
+			return checkWellFormed(createParser(buffer1));
+		}
+		
+		JsonNode node1 = readTree(createParser(buffer1));
+		JsonNode node2 = readTree(createParser(buffer2));
+		
+		return node1.equals(node2);
+	}
+	
+	/**
+	 * Compare two JSON string representations, treating numbers as equal when
+	 * their values are equal irrespective of how they are written. Thus
+	 * <code>1</code>, <code>1.0</code> and <code>1e0</code> are all equal.
+	 * 
+	 * @param json1
+	 *            the first representation
+	 * 
+	 * @param json2
+	 *            the second representation
+	 * 
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJsonNumerically(String json1, String json2) throws IOException {
+		return compareJsonNumerically(json1, json2, 0);
+	}
+	
+	/**
+	 * Compare two JSON string representations, treating numbers as equal when
+	 * their values differ by no more than the given epsilon.
+	 * 
+	 * @param json1
+	 *            the first representation
+	 * 
+	 * @param json2
+	 *            the second representation
+	 * 
+	 * @param epsilon
+	 *            the maximum absolute difference between two equal numbers,
+	 *            <code>0</code> for an exact comparison
+	 * 
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJsonNumerically(String json1, String json2, double epsilon) throws IOException {
+		if(json1 == null || json2 == null) {
+			return false;
+		}
+		
+		if(json1 == json2 || RawPreCheck.jsonEquals(RawPreCheck.of(json1), RawPreCheck.of(json2))) {
+			// equal but for whitespace, so both are as well-formed as one of them
+			return checkWellFormed(FACTORY.createParser(json1));
+		}
+		
+		return compareJsonNumerically(FACTORY.createParser(json1), FACTORY.createParser(json2), epsilon);
+	}
+	
+	/**
+	 * Compare two JSON string representations numerically.
+	 * 
+	 * @param json1
+	 *            the first representation
+	 * 
+	 * @param json2
+	 *            the second representation
+	 * 
+	 * @param epsilon
+	 *            the maximum absolute difference between two equal numbers,
+	 *            <code>0</code> for an exact comparison
+	 * 
+	 * @return <code>True</code> if the two JSON representations represent the
+	 *         same object, <code>False</code> otherwise, and <code>null</code>
+	 *         if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static Boolean compareJsonNumericallyQuietly(String json1, String json2, double epsilon) {
+		try {
+			return compareJsonNumerically(json1, json2, epsilon);
+		} catch (IOException e) {
+			// eat up
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Compare two JSON representations numerically.
+	 * 
+	 * @param reader1
+	 *            the first representation
+	 * 
+	 * @param reader2
+	 *            the second representation
+	 * 
+	 * @param epsilon
+	 *            the maximum absolute difference between two equal numbers,
+	 *            <code>0</code> for an exact comparison
+	 * 
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJsonNumerically(Reader reader1, Reader reader2, double epsilon) throws IOException {
+		if(reader1 == null || reader2 == null) {
+			return false;
+		}
+		
+		if(reader1 == reader2) {
+			return true;
+		}
+		
+		return compareJsonNumerically(FACTORY.createParser(reader1), FACTORY.createParser(reader2), epsilon);
+	}
+	
+	/**
+	 * Compare two JSON representations numerically.
+	 * 
+	 * @param stream1
+	 *            the first representation
+	 * 
+	 * @param stream2
+	 *            the second representation
+	 * 
+	 * @param epsilon
+	 *            the maximum absolute difference between two equal numbers,
+	 *            <code>0</code> for an exact comparison
+	 * 
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJsonNumerically(InputStream stream1, InputStream stream2, double epsilon) throws IOException {
+		if(stream1 == null || stream2 == null) {
+			return false;
+		}
+		
+		if(stream1 == stream2) {
+			return true;
+		}
+		
+		return compareJsonNumerically(FACTORY.createParser(stream1), FACTORY.createParser(stream2), epsilon);
+	}
+	
+	/**
+	 * Compare the first value available from each of the two parsers, reading
+	 * both token streams in lock-step without building a tree. Numbers are
+	 * compared by value directly from the parser tokens. Both parsers are closed
+	 * once done.
+	 * 
+	 * @param parser1
+	 *            the parser over the first representation
+	 * 
+	 * @param parser2
+	 *            the parser over the second representation
+	 * 
+	 * @param epsilon
+	 *            the maximum absolute difference between two equal numbers,
+	 *            <code>0</code> for an exact comparison
+	 * 
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJsonNumerically(JsonParser parser1, JsonParser parser2, double epsilon) throws IOException {
+		if(parser1 == null || parser2 == null) {
+			return false;
+		}
+		
+		return new JSONStreamComparer(epsilon).compare(parser1, parser2);
+	}
+
+	/**
+	 * Compare two JSON representations, each in the format of the given
+	 * factory - such as a {@link SmileFactory} or {@link CBORFactory} for the
+	 * binary formats, or a {@link JsonFactory} for text - without converting
+	 * either to text. Pairs in different formats can thus be compared directly.
+	 * Numbers are compared by value, as with
+	 * {@link #compareJsonNumerically(JsonParser, JsonParser, double)}, as each
+	 * format encodes them in its own types: <code>1</code> equals
+	 * <code>1.0</code>. NaN and the infinities, which binary formats can hold,
+	 * equal only themselves. Binary values match the Base64 text
+	 * they are written as in formats without binary values. Factories are
+	 * thread-safe, and are best shared across comparisons.
+	 * 
+	 * @param factory1
+	 *            the factory for the format of the first representation
+	 * 
+	 * @param stream1
+	 *            the first representation
+	 * 
+	 * @param factory2
+	 *            the factory for the format of the second representation
+	 * 
+	 * @param stream2
+	 *            the second representation
+	 * 
+	 * @return <code>true</code> if the two representations represent the same
+	 *         object, <code>false</code> otherwise.
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJsonNumerically(JsonFactory factory1, InputStream stream1, JsonFactory factory2, InputStream stream2) throws IOException {
+		if(factory1 == null || factory2 == null) {
+			throw new IllegalArgumentException("Factories cannot be null");
+		}
+		
+		if(stream1 == null || stream2 == null) {
+			return false;
+		}
+		
+		return compareJsonNumerically(factory1.createParser(stream1), factory2.createParser(stream2), 0);
+	}
+	
+	/**
+	 * Compare two JSON representations, each in the format of the given
+	 * factory, as with
+	 * {@link #compareJsonNumerically(JsonFactory, InputStream, JsonFactory, InputStream)}.
+	 * 
+	 * @param factory1
+	 *            the factory for the format of the first representation
+	 * 
+	 * @param bytes1
+	 *            the first representation
+	 * 
+	 * @param factory2
+	 *            the factory for the format of the second representation
+	 * 
+	 * @param bytes2
+	 *            the second representation
+	 * 
+	 * @return <code>true</code> if the two representations represent the same
+	 *         object, <code>false</code> otherwise.
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJsonNumerically(JsonFactory factory1, byte[] bytes1, JsonFactory factory2, byte[] bytes2) throws IOException {
+		if(factory1 == null || factory2 == null) {
+			throw new IllegalArgumentException("Factories cannot be null");
+		}
+		
+		if(bytes1 == null || bytes2 == null) {
+			return false;
+		}
+		
+		if(factory1 == factory2 && RawPreCheck.of(bytes1, 0, bytes1.length).contentEquals(RawPreCheck.of(bytes2, 0, bytes2.length))) {
+			// the same bytes in the same format, so both are as well-formed as one of them
+			return checkWellFormed(factory1.createParser(bytes1));
+		}
+		
+		return compareJsonNumerically(factory1.createParser(bytes1), factory2.createParser(bytes2), 0);
+	}
+	
+	/**
+	 * Compare two Smile representations, as with
+	 * {@link #compareJsonNumerically(JsonFactory, byte[], JsonFactory, byte[])}:
+	 * numbers are compared by value.
+	 * 
+	 * @param smile1
+	 *            the first representation
+	 * 
+	 * @param smile2
+	 *            the second representation
+	 * 
+	 * @return <code>true</code> if the two representations represent the same
+	 *         object, <code>false</code> otherwise.
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareSmile(byte[] smile1, byte[] smile2) throws IOException {
+		return compareJsonNumerically(SMILE_FACTORY, smile1, SMILE_FACTORY, smile2);
+	}
+	
+	/**
+	 * Compare two CBOR representations, as with
+	 * {@link #compareJsonNumerically(JsonFactory, byte[], JsonFactory, byte[])}:
+	 * numbers are compared by value.
+	 * 
+	 * @param cbor1
+	 *            the first representation
+	 * 
+	 * @param cbor2
+	 *            the second representation
+	 * 
+	 * @return <code>true</code> if the two representations represent the same
+	 *         object, <code>false</code> otherwise.
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareCbor(byte[] cbor1, byte[] cbor2) throws IOException {
+		return compareJsonNumerically(CBOR_FACTORY, cbor1, CBOR_FACTORY, cbor2);
+	}
+
+	/**
+	 * Compare two compact JSON documents. Build the documents once using
+	 * {@link CompactJSONDocument#parse(String)} when the same document is
+	 * compared many times, such as a baseline.
+	 * 
+	 * @param document1
+	 *            the first document
+	 * 
+	 * @param document2
+	 *            the second document
+	 * 
+	 * @return <code>true</code> if the two documents represent the same
+	 *         object, <code>false</code> otherwise.
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJson(CompactJSONDocument document1, CompactJSONDocument document2) {
+		if(document1 == null || document2 == null) {
+			return false;
+		}
+		
+		return document1.equivalentTo(document2);
+	}
+
+	/**
+	 * Compare two compact JSON documents, comparing large arrays and objects
+	 * in parallel on the given pool. Outstanding chunks are cancelled as soon
+	 * as one finds a difference; documents below a size threshold are compared
+	 * on the calling thread.
+	 * 
+	 * @param document1
+	 *            the first document
+	 * 
+	 * @param document2
+	 *            the second document
+	 * 
+	 * @param pool
+	 *            the pool to run the comparison on
+	 * 
+	 * @return <code>true</code> if the two documents represent the same
+	 *         object, <code>false</code> otherwise.
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJson(CompactJSONDocument document1, CompactJSONDocument document2, ForkJoinPool pool) {
+		if(document1 == null || document2 == null) {
+			return false;
+		}
+		
+		return document1.equivalentTo(document2, pool);
+	}
+	
+	/**
+	 * Compare two JSON string representations numerically, as with
+	 * {@link #compareJsonNumerically(String, String)}, comparing large arrays
+	 * and objects in parallel on a shared default pool.
+	 * 
+	 * @param json1
+	 *            the first representation
+	 * 
+	 * @param json2
+	 *            the second representation
+	 * 
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 * 
+	 * @throws JsonParseException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJsonNumericallyInParallel(String json1, String json2) throws JsonParseException {
+		return compareJsonNumericallyInParallel(json1, json2, ParallelSupport.getDefaultPool());
+	}
+	
+	/**
+	 * Compare two JSON string representations numerically, as with
+	 * {@link #compareJsonNumerically(String, String)}, comparing large arrays
+	 * and objects in parallel on the given pool. The object keys of both are
+	 * interned in a key pool of their own, rather than the default one.
+	 * 
+	 * @param json1
+	 *            the first representation
+	 * 
+	 * @param json2
+	 *            the second representation
+	 * 
+	 * @param pool
+	 *            the pool to run the comparison on
+	 * 
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 * 
+	 * @throws JsonParseException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJsonNumericallyInParallel(String json1, String json2, ForkJoinPool pool) throws JsonParseException {
+		if(json1 == null || json2 == null) {
+			return false;
+		}
+		
+		if(json1 == json2 || RawPreCheck.jsonEquals(RawPreCheck.of(json1), RawPreCheck.of(json2))) {
+			// equal but for whitespace, so both are as well-formed as one of them;
+			// comments are allowed, as by the parallel parser
+			try {
+				return checkWellFormed(FACTORY.createParser(json1));
+			} catch(JsonParseException e) {
+				throw e;
+			} catch(IOException e) {
+				// reading a string does not fail otherwise
+				throw new IllegalStateException(e);
+			}
+		}
+		
+		// a pool of their own, so that keys are not kept past the comparison
+		JSONKeyPool keys = new JSONKeyPool();
+		return compareJson(CompactJSONDocument.parse(json1, keys), CompactJSONDocument.parse(json2, keys), pool);
+	}
+	
+	/**
+	 * Compare two files of JSON records - newline-delimited JSON, or a single
+	 * top-level JSON array - irrespective of the order of the records, matching
+	 * records on the given key path. Files of any size are compared within a
+	 * bounded heap, as with {@link JSONRecordComparer}.
+	 * 
+	 * @param file1
+	 *            the first file
+	 * 
+	 * @param file2
+	 *            the second file
+	 * 
+	 * @param keyPath
+	 *            the JSON pointer to the key of a record, such as
+	 *            <code>/id</code>
+	 * 
+	 * @return <code>true</code> if both files hold equal records,
+	 *         <code>false</code> otherwise.
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJsonRecords(File file1, File file2, String keyPath) throws IOException {
+		return new JSONRecordComparer(keyPath).compare(file1, file2);
+	}
+	
+	/**
+	 * Compare two JSON string representations, parsing both on the given
+	 * executor. The comparison ends as soon as one parse fails, or as soon as
+	 * one completes if the two top-level values are of different types; the
+	 * other parse is then abandoned.
+	 * 
+	 * @param json1
+	 *            the first representation
+	 * 
+	 * @param json2
+	 *            the second representation
+	 * 
+	 * @param executor
+	 *            the executor to parse the representations on
+	 * 
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 * 
+	 * @throws JsonProcessingException
+	 *             if something fails
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJson(String json1, String json2, Executor executor) throws JsonProcessingException, IOException {
+		if(json1 == null || json2 == null) {
+			return false;
+		}
+		
+		JsonFactory factory = MAPPER.getFactory();
+		if(json1 == json2 || RawPreCheck.jsonEquals(RawPreCheck.of(json1), RawPreCheck.of(json2))) {
+			// equal but for whitespace, so both are as well-formed as one of them
+			return checkWellFormed(factory.createParser(json1));
+		}
+		
+		return compareJson(factory.createParser(json1), factory.createParser(json2), executor);
+	}
+	
+	/**
+	 * Compare two JSON representations, parsing both on the given executor, as
+	 * with {@link #compareJson(String, String, Executor)}.
+	 * 
+	 * @param reader1
+	 *            the first representation
+	 * 
+	 * @param reader2
+	 *            the second representation
+	 * 
+	 * @param executor
+	 *            the executor to parse the representations on
+	 * 
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 * 
+	 * @throws JsonProcessingException
+	 *             if something fails
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJson(Reader reader1, Reader reader2, Executor executor) throws JsonProcessingException, IOException {
+		if(reader1 == null || reader2 == null) {
+			return false;
+		}
+		
+		if(reader1 == reader2) {
+			return true;
+		}
+		
+		JsonFactory factory = MAPPER.getFactory();
+		return compareJson(factory.createParser(reader1), factory.createParser(reader2), executor);
+	}
+	
+	/**
+	 * Compare two JSON representations, parsing both on the given executor, as
+	 * with {@link #compareJson(String, String, Executor)}.
+	 * 
+	 * @param stream1
+	 *            the first representation
+	 * 
+	 * @param stream2
+	 *            the second representation
+	 * 
+	 * @param executor
+	 *            the executor to parse the representations on
+	 * 
+	 * @return <code>true</code> if the two JSON representations represent the
+	 *         same object, <code>false</code> otherwise.
+	 * 
+	 * @throws JsonProcessingException
+	 *             if something fails
+	 * 
+	 * @throws IOException
+	 *             if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareJson(InputStream stream1, InputStream stream2, Executor executor) throws JsonProcessingException, IOException {
+		if(stream1 == null || stream2 == null) {
+			return false;
+		}
+		
+		if(stream1 == stream2) {
+			return true;
+		}
+		
+		JsonFactory factory = MAPPER.getFactory();
+		return compareJson(factory.createParser(stream1), factory.createParser(stream2), executor);
+	}
+	
+	private static boolean compareJson(final JsonParser parser1, final JsonParser parser2, Executor executor) throws IOException {
+		final ConcurrentParsing.Shapes shapes = new ConcurrentParsing.Shapes();
+		
+		ConcurrentParsing.Results<JsonNode> nodes;
+		try {
+			nodes = ConcurrentParsing.parseBoth(executor, new ConcurrentParsing.Parse<JsonNode>() {
+				
+				@Override
+				JsonNode parse() throws IOException {
+					return readTree(parser1, shapes, 0);
+				}
+				
+				@Override
+				void close() throws IOException {
+					parser1.close();
+				}
+				
+			}, new ConcurrentParsing.Parse<JsonNode>() {
+				
+				@Override
+				JsonNode parse() throws IOException {
+					return readTree(parser2, shapes, 1);
+				}
+				
+				@Override
+				void close() throws IOException {
+					parser2.close();
+				}
+				
+			}, shapes);
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			
+			throw ConcurrentParsing.unchecked(e.getCause());
+		}
+		
+		return nodes != null && nodes.first != null && nodes.second != null && nodes.first.equals(nodes.second);
+	}
+	
+	/**
+	 * Read a tree from the given parser, publishing the type of the top-level
+	 * value before reading the rest.
+	 * 
+	 * @return the tree, or <code>null</code> if the other side is known to
+	 *         differ in the type of its top-level value
+	 */
+	private static JsonNode readTree(JsonParser parser, ConcurrentParsing.Shapes shapes, int side) throws IOException {
+		JsonToken token = parser.nextToken();
+		if(!shapes.publish(side, token == null ? JsonToken.NOT_AVAILABLE : token)) {
+			return null;
+		}
+		
+		if(token == null) {
+			return MissingNode.getInstance();
+		}
+		
+		return MAPPER.readTree(parser);
+	}
+	
+	private static JsonParser createParser(ByteBuffer buffer) throws IOException {
+		if(buffer.hasArray()) {
+			return MAPPER.getFactory().createParser(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		}
+		
+		return MAPPER.getFactory().createParser(Buffers.newInputStream(buffer));
+	}
+	
+	/**
+	 * Read a tree from the given parser, which is closed.
+	 * 
+	 */
+	private static JsonNode readTree(JsonParser parser) throws IOException {
+		try {
+			JsonNode node = MAPPER.readTree(parser);
+			return node != null ? node : MissingNode.getInstance();
+		} finally {
+			parser.close();
+		}
+	}
+	
+	/**
+	 * Check that the first value of the given parser, which is closed, is
+	 * well-formed, reading its tokens without building it. Used when the raw
+	 * inputs are found equal, so that malformed inputs still fail as they do
+	 * when both are parsed.
+	 * 
+	 * @return <code>true</code>, if the value is well-formed
+	 * 
+	 * @throws IOException
+	 *             if the value is malformed
+	 */
+	private static boolean checkWellFormed(JsonParser parser) throws IOException {
+		try {
+			int depth = 0;
+			do {
+				JsonToken token = parser.nextToken();
+				if(token == null) {
+					return true;
+				}
+				
+				if(token.isStructStart()) {
+					depth++;
+				} else if(token.isStructEnd()) {
+					depth--;
+				} else if(token == JsonToken.VALUE_STRING) {
+					// strings are only decoded, and checked, when read
+					parser.getTextLength();
+				}
+			} while(depth > 0);
+			
+			return true;
+		} finally {
+			parser.close();
+		}
+	}
+
 }
@@ -0,0 +1,302 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.util.Arrays;
+
+/**
+ * A pool of interned JSON object keys, shared by {@link CompactJSONDocument}
+ * instances. Every distinct key is assigned a small integer id, so documents
+ * built over the same pool compare keys by id rather than by text. Keys are
+ * looked up directly from a slice of the source buffer - a {@link String} is
+ * only created the first time a key is seen.
+ *
+ * A pool only ever grows, and holds its keys for as long as it is reachable.
+ * The default pool is shared by the whole process, so the keys it holds are
+ * never released: it stops taking keys once it holds {@link #DEFAULT_LIMIT}
+ * of them, and documents parsed over it afterwards with keys it does not hold
+ * get a pool of their own (see {@link CompactJSONDocument#parse(String)}). Use
+ * a dedicated pool, rather than the default one, when keys are unbounded (such
+ * as keys derived from user data).
+ *
+ * The pool is thread-safe. Looking up a key already in the pool takes no lock;
+ * only adding a key does.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class JSONKeyPool {
+
+	/**
+	 * The number of keys the default pool holds at most
+	 */
+	public static final int DEFAULT_LIMIT = 1 << 16;
+
+	/**
+	 * The pool used when none is specified
+	 */
+	static final JSONKeyPool DEFAULT = new JSONKeyPool(DEFAULT_LIMIT);
+
+	/**
+	 * The number of keys this pool holds at most
+	 */
+	private final int limit;
+
+	/**
+	 * The current table. Slots and keys are filled in place while they fit,
+	 * and a larger table is published when they do not. Lookups read it
+	 * without locking, and take the lock only when they miss.
+	 */
+	private volatile Table table = new Table(new String[64], new int[64], new int[128]);
+
+	private int size;
+
+	/**
+	 * Create an unbounded pool.
+	 *
+	 */
+	public JSONKeyPool() {
+		this(Integer.MAX_VALUE);
+	}
+
+	JSONKeyPool(int limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Return the id for the key held in the given slice, adding it to the pool
+	 * if needed.
+	 *
+	 * @param text
+	 *            the text holding the key
+	 *
+	 * @param offset
+	 *            the offset of the key in the text
+	 *
+	 * @param length
+	 *            the length of the key
+	 *
+	 * @return the id of the key, or <code>-1</code> if the key is not in the
+	 *         pool and the pool is full
+	 */
+	public int getId(CharSequence text, int offset, int length) {
+		int hash = hash(text, offset, length);
+		int id = find(this.table, text, offset, length, hash);
+		if(id >= 0) {
+			return id;
+		}
+
+		return add(text, offset, length, hash);
+	}
+
+	/**
+	 * Return the id for the key held in the given slice, without adding it to
+	 * the pool.
+	 *
+	 * @param text
+	 *            the text holding the key
+	 *
+	 * @param offset
+	 *            the offset of the key in the text
+	 *
+	 * @param length
+	 *            the length of the key
+	 *
+	 * @return the id of the key, or <code>-1</code> if the key is not in the
+	 *         pool
+	 */
+	public int findId(CharSequence text, int offset, int length) {
+		int hash = hash(text, offset, length);
+		int id = find(this.table, text, offset, length, hash);
+		if(id >= 0) {
+			return id;
+		}
+
+		synchronized(this) {
+			return find(this.table, text, offset, length, hash);
+		}
+	}
+
+	/**
+	 * Look the key up in the given table.
+	 *
+	 * @return the id of the key, or <code>-1</code> on a miss
+	 */
+	private static int find(Table table, CharSequence text, int offset, int length, int hash) {
+		// the slots and keys read here may be in the middle of being written:
+		// anything not yet complete is a miss, settled under the lock
+		int mask = table.slots.length - 1;
+		int slot = hash & mask;
+		do {
+			int entry = table.slots[slot];
+			if(entry == 0) {
+				break;
+			}
+
+			int id = entry - 1;
+			if(id >= table.keys.length) {
+				break;
+			}
+
+			String key = table.keys[id];
+			if(key == null) {
+				break;
+			}
+
+			if(matches(key, text, offset, length)) {
+				return id;
+			}
+
+			slot = (slot + 1) & mask;
+		} while(true);
+
+		return -1;
+	}
+
+	/**
+	 * Return the key with the given id.
+	 *
+	 * @param id
+	 *            the id of the key
+	 *
+	 * @return the key
+	 */
+	public String getKey(int id) {
+		String[] keys = this.table.keys;
+		if(id < keys.length && keys[id] != null) {
+			return keys[id];
+		}
+
+		synchronized(this) {
+			return this.table.keys[id];
+		}
+	}
+
+	/**
+	 * @return the number of distinct keys in the pool
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	private synchronized int add(CharSequence text, int offset, int length, int hash) {
+		Table table = this.table;
+		int mask = table.slots.length - 1;
+		int slot = hash & mask;
+
+		do {
+			int entry = table.slots[slot];
+			if(entry == 0) {
+				break;
+			}
+
+			int id = entry - 1;
+			if(table.hashes[id] == hash && matches(table.keys[id], text, offset, length)) {
+				return id;
+			}
+
+			slot = (slot + 1) & mask;
+		} while(true);
+
+		if(this.size == this.limit) {
+			return -1;
+		}
+
+		int id = this.size;
+		if(id == table.keys.length) {
+			table = new Table(Arrays.copyOf(table.keys, id * 2), Arrays.copyOf(table.hashes, id * 2), table.slots);
+		}
+
+		table.keys[id] = text.subSequence(offset, offset + length).toString();
+		table.hashes[id] = hash;
+		table.slots[slot] = id + 1;
+		this.size++;
+
+		if(this.size * 2 > table.slots.length) {
+			table = rehash(table);
+		}
+
+		this.table = table;
+		return id;
+	}
+
+	private Table rehash(Table table) {
+		int[] slots = new int[table.slots.length * 2];
+		int mask = slots.length - 1;
+		for(int id = 0; id < this.size; id++) {
+			int slot = table.hashes[id] & mask;
+			while(slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+
+			slots[slot] = id + 1;
+		}
+
+		return new Table(table.keys, table.hashes, slots);
+	}
+
+	private static int hash(CharSequence text, int offset, int length) {
+		int hash = 0;
+		for(int index = 0; index < length; index++) {
+			hash = 31 * hash + text.charAt(offset + index);
+		}
+
+		// spread the bits, as the table is indexed by the low ones
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean matches(String key, CharSequence text, int offset, int length) {
+		if(key.length() != length) {
+			return false;
+		}
+
+		for(int index = 0; index < length; index++) {
+			if(key.charAt(index) != text.charAt(offset + index)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Keys by id, the hash of each key by id, and the open-addressing table of
+	 * <code>id + 1</code>, <code>0</code> for empty slots
+	 *
+	 */
+	private static final class Table {
+
+		final String[] keys;
+
+		final int[] hashes;
+
+		final int[] slots;
+
+		Table(String[] keys, int[] hashes, int[] slots) {
+			this.keys = keys;
+			this.hashes = hashes;
+			this.slots = slots;
+		}
+
+	}
+
+}
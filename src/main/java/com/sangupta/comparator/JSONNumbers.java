@@ -0,0 +1,301 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.nio.CharBuffer;
+
+/**
+ * Exact comparison of JSON number literals by their decimal value, working
+ * directly over the characters of the literal. No {@link java.math.BigDecimal}
+ * or {@link String} is created, so <code>1</code>, <code>1.0</code>,
+ * <code>10e-1</code> and <code>0.1E1</code> compare equal at the cost of a
+ * single scan of each literal.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+final class JSONNumbers {
+
+	/**
+	 * Exponents beyond this are clamped - no JSON document carries a literal
+	 * long enough for the clamping to matter.
+	 */
+	private static final long EXPONENT_LIMIT = 1L << 40;
+
+	private JSONNumbers() {
+		// utility class
+	}
+
+	/**
+	 * Compare two number literals by decimal value. If either literal cannot be
+	 * read as a decimal number (such as <code>NaN</code>) the literals are
+	 * compared as text.
+	 *
+	 * @param decimal1
+	 *            a reusable holder for the first literal
+	 *
+	 * @param decimal2
+	 *            a reusable holder for the second literal
+	 *
+	 * @return <code>true</code> if both literals denote the same value
+	 */
+	static boolean equalValue(CharSequence text1, int offset1, int length1, Decimal decimal1, CharSequence text2, int offset2, int length2, Decimal decimal2) {
+		if(!decimal1.read(text1, offset1, length1) || !decimal2.read(text2, offset2, length2)) {
+			return equalText(text1, offset1, length1, text2, offset2, length2);
+		}
+
+		return decimal1.valueEquals(decimal2);
+	}
+
+	/**
+	 * Compare two character ranges.
+	 *
+	 */
+	static boolean equalText(char[] chars1, int offset1, int length1, char[] chars2, int offset2, int length2) {
+		return length1 == length2 && Mismatch.mismatch(chars1, offset1, chars2, offset2, length1) < 0;
+	}
+
+	/**
+	 * Compare two character ranges.
+	 *
+	 */
+	static boolean equalText(CharSequence text1, int offset1, int length1, CharSequence text2, int offset2, int length2) {
+		if(length1 != length2) {
+			return false;
+		}
+
+		for(int index = 0; index < length1; index++) {
+			if(text1.charAt(offset1 + index) != text2.charAt(offset2 + index)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * A number literal decomposed as <code>0.DDDD x 10^exponent</code>, where
+	 * <code>D</code> are the significant digits. The digits are never copied:
+	 * they are addressed in place, skipping over the decimal point.
+	 *
+	 */
+	static final class Decimal {
+
+		private CharSequence text;
+
+		private boolean negative;
+
+		private int integerStart;
+
+		private int integerLength;
+
+		private int fractionStart;
+
+		/**
+		 * Index of the first significant digit, <code>-1</code> when the value is zero
+		 */
+		private int first;
+
+		/**
+		 * Index of the last significant digit
+		 */
+		private int last;
+
+		private long exponent;
+
+		/**
+		 * Read the given literal into this holder.
+		 *
+		 * @return <code>false</code> if the literal is not a decimal number
+		 */
+		boolean read(CharSequence text, int offset, int length) {
+			final int end = offset + length;
+			int index = offset;
+
+			this.text = text;
+			this.negative = false;
+			if(index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+				this.negative = text.charAt(index) == '-';
+				index++;
+			}
+
+			this.integerStart = index;
+			while(index < end && isDigit(text.charAt(index))) {
+				index++;
+			}
+			this.integerLength = index - this.integerStart;
+
+			int fractionLength = 0;
+			this.fractionStart = index;
+			if(index < end && text.charAt(index) == '.') {
+				index++;
+				this.fractionStart = index;
+				while(index < end && isDigit(text.charAt(index))) {
+					index++;
+				}
+				fractionLength = index - this.fractionStart;
+			}
+
+			if(this.integerLength + fractionLength == 0) {
+				return false;
+			}
+
+			long literalExponent = 0;
+			if(index < end && (text.charAt(index) == 'e' || text.charAt(index) == 'E')) {
+				index++;
+				boolean negativeExponent = false;
+				if(index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+					negativeExponent = text.charAt(index) == '-';
+					index++;
+				}
+
+				if(index == end) {
+					return false;
+				}
+
+				while(index < end && isDigit(text.charAt(index))) {
+					if(literalExponent < EXPONENT_LIMIT) {
+						literalExponent = literalExponent * 10 + (text.charAt(index) - '0');
+					}
+					index++;
+				}
+
+				if(negativeExponent) {
+					literalExponent = -literalExponent;
+				}
+			}
+
+			if(index != end) {
+				return false;
+			}
+
+			final int digits = this.integerLength + fractionLength;
+			this.first = -1;
+			for(int position = 0; position < digits; position++) {
+				if(digit(position) != '0') {
+					this.first = position;
+					break;
+				}
+			}
+
+			if(this.first < 0) {
+				return true;
+			}
+
+			this.last = digits - 1;
+			while(digit(this.last) == '0') {
+				this.last--;
+			}
+
+			this.exponent = literalExponent + this.integerLength - this.first;
+			return true;
+		}
+
+		/**
+		 * Compare the value held with the value of the given holder.
+		 *
+		 */
+		boolean valueEquals(Decimal other) {
+			if(this.first < 0 || other.first < 0) {
+				// negative zero equals zero
+				return this.first < 0 && other.first < 0;
+			}
+
+			if(this.negative != other.negative || this.exponent != other.exponent) {
+				return false;
+			}
+
+			final int significant = this.last - this.first;
+			if(significant != other.last - other.first) {
+				return false;
+			}
+
+			for(int position = 0; position <= significant; position++) {
+				if(this.digit(this.first + position) != other.digit(other.first + position)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * The digit at the given position, counting integer digits first and
+		 * then the fraction digits.
+		 *
+		 */
+		private char digit(int position) {
+			if(position < this.integerLength) {
+				return this.text.charAt(this.integerStart + position);
+			}
+
+			return this.text.charAt(this.fractionStart + position - this.integerLength);
+		}
+
+		private static boolean isDigit(char c) {
+			return c >= '0' && c <= '9';
+		}
+
+	}
+
+	/**
+	 * A reusable view of a whole buffer, for reading literals held in buffers
+	 * that change from one literal to the next, such as those of a parser.
+	 *
+	 */
+	static final class CharView implements CharSequence {
+
+		private char[] chars;
+
+		/**
+		 * View the given buffer.
+		 *
+		 * @return this view
+		 */
+		CharView of(char[] chars) {
+			this.chars = chars;
+			return this;
+		}
+
+		@Override
+		public int length() {
+			return this.chars.length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return this.chars[index];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return CharBuffer.wrap(this.chars, start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			return new String(this.chars);
+		}
+
+	}
+
+}
@@ -0,0 +1,179 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compares a range of children of two containers of {@link CompactJSONDocument}s
+ * that share a key pool. Ranges spanning many values are split in halves and
+ * compared through work-stealing; smaller ranges are compared sequentially,
+ * descending into a new task only for children that are large themselves.
+ *
+ * All tasks of one comparison share a flag that is raised at the first
+ * difference, upon which outstanding tasks stop early or are cancelled.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+final class JSONParallelTask extends RecursiveTask<Boolean> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Number of values below which a range is compared sequentially
+	 */
+	static final int SEQUENTIAL_THRESHOLD = 16 * 1024;
+
+	/**
+	 * Number of nested containers below which large children are no longer
+	 * split into tasks of their own, so that deep nesting does not recurse
+	 */
+	static final int MAX_SPLIT_DEPTH = 32;
+
+	private final CompactJSONDocument document1;
+
+	private final CompactJSONDocument document2;
+
+	private final int node1;
+
+	private final int node2;
+
+	private final int from;
+
+	private final int to;
+
+	private final AtomicBoolean mismatch;
+
+	/**
+	 * Number of containers between the root of the comparison and the one
+	 * whose children are compared
+	 */
+	private final int depth;
+
+	JSONParallelTask(CompactJSONDocument document1, CompactJSONDocument document2, int node1, int node2, int from, int to, AtomicBoolean mismatch) {
+		this(document1, document2, node1, node2, from, to, mismatch, 0);
+	}
+
+	private JSONParallelTask(CompactJSONDocument document1, CompactJSONDocument document2, int node1, int node2, int from, int to, AtomicBoolean mismatch, int depth) {
+		this.document1 = document1;
+		this.document2 = document2;
+		this.node1 = node1;
+		this.node2 = node2;
+		this.from = from;
+		this.to = to;
+		this.mismatch = mismatch;
+		this.depth = depth;
+	}
+
+	@Override
+	protected Boolean compute() {
+		if(this.mismatch.get()) {
+			return false;
+		}
+
+		final int children = this.document1.length(this.node1);
+		final long subtree = this.document1.ends[this.node1] - this.node1 - 1;
+		final long weight = subtree * (this.to - this.from) / children;
+
+		if(weight > SEQUENTIAL_THRESHOLD && this.to - this.from > 1) {
+			int middle = (this.from + this.to) >>> 1;
+
+			JSONParallelTask left = new JSONParallelTask(this.document1, this.document2, this.node1, this.node2, this.from, middle, this.mismatch, this.depth);
+			left.fork();
+
+			boolean right = new JSONParallelTask(this.document1, this.document2, this.node1, this.node2, middle, this.to, this.mismatch, this.depth).compute();
+			if(!right) {
+				this.mismatch.set(true);
+				left.cancel(false);
+				return false;
+			}
+
+			try {
+				return left.join();
+			} catch(CancellationException e) {
+				return false;
+			}
+		}
+
+		if(!compareSequentially()) {
+			this.mismatch.set(true);
+			return false;
+		}
+
+		return true;
+	}
+
+	private boolean compareSequentially() {
+		final CompactJSONDocument d1 = this.document1;
+		final CompactJSONDocument d2 = this.document2;
+
+		final int base1 = d1.start(this.node1);
+		final int base2 = d2.start(this.node2);
+		final boolean object = d1.type(this.node1) == CompactJSONDocument.OBJECT;
+
+		CompactJSONDocument.Matcher matcher = new CompactJSONDocument.Matcher(d1, d2);
+		for(int index = this.from; index < this.to; index++) {
+			if(this.mismatch.get()) {
+				return false;
+			}
+
+			int child1 = d1.children[base1 + index];
+			int child2 = d2.children[base2 + index];
+
+			if(object && d1.keys[child1] != d2.keys[child2]) {
+				return false;
+			}
+
+			if(this.depth < MAX_SPLIT_DEPTH && d1.ends[child1] - child1 > SEQUENTIAL_THRESHOLD && isShallowEqual(d1, d2, child1, child2)) {
+				// a large child of its own: split it up as well
+				if(!new JSONParallelTask(d1, d2, child1, child2, 0, d1.length(child1), this.mismatch, this.depth + 1).compute()) {
+					return false;
+				}
+
+				continue;
+			}
+
+			if(!matcher.matches(child1, child2)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Check if both nodes are containers of the same type and size.
+	 *
+	 */
+	static boolean isShallowEqual(CompactJSONDocument document1, CompactJSONDocument document2, int node1, int node2) {
+		int type = document1.type(node1);
+		if(type != CompactJSONDocument.OBJECT && type != CompactJSONDocument.ARRAY) {
+			return false;
+		}
+
+		return type == document2.type(node2) && document1.length(node1) == document2.length(node2) && document1.length(node1) > 0;
+	}
+
+}
@@ -0,0 +1,685 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Compare two collections of JSON records - either newline-delimited JSON, or a
+ * single top-level JSON array - irrespective of the order of the records. Both
+ * inputs are read record by record, and records are matched on the value found
+ * at a configurable key path. Matched records are compared as with
+ * {@link JSONComparer#compareJson(String, String)}, one pair at a time.
+ *
+ * Records waiting for their match are held in memory, serialized, up to a
+ * memory budget. Once the budget is exceeded they are written out to run files
+ * sorted by key, and the runs of the two sides are finally matched up through
+ * an external merge. Thus inputs of any size compare within a bounded heap.
+ *
+ * The collections are equal if every record of either side matches exactly one
+ * equal record of the other side. A record without the key, or with a key used
+ * by another record of the same side, makes the collections unequal.
+ *
+ * Instances may be reused, but are not thread-safe while being configured.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class JSONRecordComparer {
+
+	/**
+	 * The default memory budget for records waiting for their match
+	 */
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+	/**
+	 * Maximum number of run files merged at once
+	 */
+	static final int MERGE_WIDTH = 64;
+
+	/**
+	 * Estimated heap overhead of a waiting record, beyond its key and content
+	 */
+	private static final int ENTRY_OVERHEAD = 64;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * The record written to a run for a key matched in memory - serialized
+	 * records are never empty
+	 */
+	private static final byte[] MATCHED = new byte[0];
+
+	private static final Comparator<Entry<String, byte[]>> KEY_ORDER = new Comparator<Entry<String, byte[]>>() {
+
+		@Override
+		public int compare(Entry<String, byte[]> entry1, Entry<String, byte[]> entry2) {
+			return entry1.getKey().compareTo(entry2.getKey());
+		}
+
+	};
+
+	private final JsonPointer keyPath;
+
+	private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+	private File spillDirectory;
+
+	/**
+	 * Create a comparer matching records on the given key path.
+	 *
+	 * @param keyPath
+	 *            the JSON pointer to the key of a record, such as
+	 *            <code>/id</code> or <code>/meta/uuid</code>
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the key path is not a valid JSON pointer
+	 */
+	public JSONRecordComparer(String keyPath) {
+		if(keyPath == null) {
+			throw new IllegalArgumentException("Key path cannot be null");
+		}
+
+		this.keyPath = JsonPointer.compile(keyPath);
+	}
+
+	/**
+	 * Compare the records of two files.
+	 *
+	 * @param file1
+	 *            the first file
+	 *
+	 * @param file2
+	 *            the second file
+	 *
+	 * @return <code>true</code> if both files hold equal records,
+	 *         <code>false</code> otherwise
+	 *
+	 * @throws IOException
+	 *             if a file cannot be read or parsed, or a run file cannot be
+	 *             written
+	 */
+	public boolean compare(File file1, File file2) throws IOException {
+		if(file1 == null || file2 == null) {
+			return false;
+		}
+
+		InputStream stream1 = new FileInputStream(file1);
+		try {
+			InputStream stream2 = new FileInputStream(file2);
+			try {
+				return compare(stream1, stream2);
+			} finally {
+				stream2.close();
+			}
+		} finally {
+			stream1.close();
+		}
+	}
+
+	/**
+	 * Compare the records of two streams. Both streams are closed.
+	 *
+	 * @param stream1
+	 *            the first stream
+	 *
+	 * @param stream2
+	 *            the second stream
+	 *
+	 * @return <code>true</code> if both streams hold equal records,
+	 *         <code>false</code> otherwise
+	 *
+	 * @throws IOException
+	 *             if a stream cannot be read or parsed, or a run file cannot be
+	 *             written
+	 */
+	public boolean compare(InputStream stream1, InputStream stream2) throws IOException {
+		if(stream1 == null || stream2 == null) {
+			return false;
+		}
+
+		return compare(MAPPER.getFactory().createParser(stream1), MAPPER.getFactory().createParser(stream2));
+	}
+
+	/**
+	 * Compare the records of two readers. Both readers are closed.
+	 *
+	 * @param reader1
+	 *            the first reader
+	 *
+	 * @param reader2
+	 *            the second reader
+	 *
+	 * @return <code>true</code> if both readers hold equal records,
+	 *         <code>false</code> otherwise
+	 *
+	 * @throws IOException
+	 *             if a reader cannot be read or parsed, or a run file cannot be
+	 *             written
+	 */
+	public boolean compare(Reader reader1, Reader reader2) throws IOException {
+		if(reader1 == null || reader2 == null) {
+			return false;
+		}
+
+		return compare(MAPPER.getFactory().createParser(reader1), MAPPER.getFactory().createParser(reader2));
+	}
+
+	private boolean compare(JsonParser parser1, JsonParser parser2) throws IOException {
+		Side side1 = new Side(parser1);
+		Side side2 = new Side(parser2);
+
+		try {
+			return join(side1, side2) && merge(side1, side2);
+		} finally {
+			try {
+				side1.close();
+			} finally {
+				side2.close();
+			}
+		}
+	}
+
+	/**
+	 * Read both sides in turn, comparing each record with its match if the
+	 * match is waiting in memory.
+	 *
+	 * @return <code>false</code> if a difference was found
+	 */
+	private boolean join(Side side1, Side side2) throws IOException {
+		boolean more1 = true;
+		boolean more2 = true;
+
+		while(more1 || more2) {
+			if(more1) {
+				JsonNode record = side1.nextRecord();
+				if(record == null) {
+					more1 = false;
+				} else if(!match(record, side1, side2)) {
+					return false;
+				}
+			}
+
+			if(more2) {
+				JsonNode record = side2.nextRecord();
+				if(record == null) {
+					more2 = false;
+				} else if(!match(record, side2, side1)) {
+					return false;
+				}
+			}
+
+			if(side1.pendingBytes + side2.pendingBytes > this.memoryBudget) {
+				side1.spill(this.spillDirectory);
+				side2.spill(this.spillDirectory);
+			}
+		}
+
+		return true;
+	}
+
+	private boolean match(JsonNode record, Side side, Side other) throws IOException {
+		JsonNode keyNode = record.at(this.keyPath);
+		if(keyNode.isMissingNode()) {
+			return false;
+		}
+
+		// the serialized form tells apart keys such as 1 and "1"
+		String key = keyNode.toString();
+
+		if(side.hasSeen(key)) {
+			// used by another record of this side
+			return false;
+		}
+
+		byte[] match = other.remove(key);
+		if(match != null) {
+			side.addMatched(key);
+			other.addMatched(key);
+			return record.equals(MAPPER.readTree(match));
+		}
+
+		side.add(key, MAPPER.writeValueAsBytes(record));
+		return true;
+	}
+
+	/**
+	 * Match up the records spilled to disk, along with those still waiting in
+	 * memory. The runs of a side also hold the keys it matched in memory, so
+	 * that a key used twice by one side is found whether or not its records
+	 * were spilled in between.
+	 *
+	 * @return <code>false</code> if a difference was found
+	 */
+	private boolean merge(Side side1, Side side2) throws IOException {
+		if(side1.runs.isEmpty() && side2.runs.isEmpty()) {
+			return side1.pending.isEmpty() && side2.pending.isEmpty();
+		}
+
+		side1.spill(this.spillDirectory);
+		side2.spill(this.spillDirectory);
+
+		side1.reduceRuns(this.spillDirectory);
+		side2.reduceRuns(this.spillDirectory);
+
+		MergedRuns runs1 = new MergedRuns(side1.runs);
+		try {
+			MergedRuns runs2 = new MergedRuns(side2.runs);
+			try {
+				String previous = null;
+				while(true) {
+					boolean more1 = runs1.next();
+					boolean more2 = runs2.next();
+
+					if(more1 != more2) {
+						return false;
+					}
+
+					if(!more1) {
+						return true;
+					}
+
+					// unmatched on either side, or duplicated on both
+					if(!runs1.key.equals(runs2.key) || runs1.key.equals(previous)) {
+						return false;
+					}
+
+					// both matched in memory already, or both still to be compared
+					if(runs1.record.length == 0 || runs2.record.length == 0) {
+						if(runs1.record.length != runs2.record.length) {
+							return false;
+						}
+					} else if(!Arrays.equals(runs1.record, runs2.record) && !MAPPER.readTree(runs1.record).equals(MAPPER.readTree(runs2.record))) {
+						return false;
+					}
+
+					previous = runs1.key;
+				}
+			} finally {
+				runs2.close();
+			}
+		} finally {
+			runs1.close();
+		}
+	}
+
+	/**
+	 * @return the memory budget, in bytes, for records waiting for their match
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * @param memoryBudget
+	 *            the memory budget, in bytes, for records waiting for their
+	 *            match, beyond which they are spilled to disk
+	 */
+	public void setMemoryBudget(long memoryBudget) {
+		if(memoryBudget < 0) {
+			throw new IllegalArgumentException("Memory budget cannot be negative");
+		}
+
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * @return the directory run files are created in, <code>null</code> for
+	 *         the default temporary directory
+	 */
+	public File getSpillDirectory() {
+		return spillDirectory;
+	}
+
+	/**
+	 * @param spillDirectory
+	 *            the directory run files are created in, <code>null</code> for
+	 *            the default temporary directory
+	 */
+	public void setSpillDirectory(File spillDirectory) {
+		this.spillDirectory = spillDirectory;
+	}
+
+	/**
+	 * One side of a comparison: its input, the records waiting in memory for
+	 * their match, the keys matched in memory, and the run files spilled so far.
+	 * A run holds both kinds of entries, matched keys with an empty record.
+	 *
+	 */
+	private static final class Side implements Closeable {
+
+		private final JsonParser parser;
+
+		private final Map<String, byte[]> pending = new HashMap<String, byte[]>();
+
+		private final Set<String> matched = new HashSet<String>();
+
+		private final List<File> runs = new ArrayList<File>();
+
+		private long pendingBytes;
+
+		private boolean started;
+
+		private boolean array;
+
+		private boolean exhausted;
+
+		Side(JsonParser parser) {
+			this.parser = parser;
+		}
+
+		/**
+		 * @return the next record of the input, or <code>null</code> at its end
+		 */
+		JsonNode nextRecord() throws IOException {
+			if(this.exhausted) {
+				return null;
+			}
+
+			JsonToken token = this.parser.nextToken();
+			if(!this.started) {
+				this.started = true;
+				if(token == JsonToken.START_ARRAY) {
+					this.array = true;
+					token = this.parser.nextToken();
+				}
+			}
+
+			if(token == null || (this.array && token == JsonToken.END_ARRAY)) {
+				this.exhausted = true;
+				return null;
+			}
+
+			return MAPPER.readTree(this.parser);
+		}
+
+		/**
+		 * @return <code>true</code> if a record of this side with the given key
+		 *         is waiting, or was matched since the last spill
+		 */
+		boolean hasSeen(String key) {
+			return this.pending.containsKey(key) || this.matched.contains(key);
+		}
+
+		void addMatched(String key) {
+			this.matched.add(key);
+			this.pendingBytes += size(key, MATCHED);
+		}
+
+		void add(String key, byte[] record) {
+			this.pending.put(key, record);
+			this.pendingBytes += size(key, record);
+		}
+
+		byte[] remove(String key) {
+			byte[] record = this.pending.remove(key);
+			if(record != null) {
+				this.pendingBytes -= size(key, record);
+			}
+
+			return record;
+		}
+
+		/**
+		 * Write the records waiting in memory to a new run file, sorted by key.
+		 *
+		 */
+		void spill(File directory) throws IOException {
+			if(this.pending.isEmpty() && this.matched.isEmpty()) {
+				return;
+			}
+
+			for(String key : this.matched) {
+				this.pending.put(key, MATCHED);
+			}
+
+			List<Entry<String, byte[]>> entries = new ArrayList<Entry<String, byte[]>>(this.pending.entrySet());
+			Collections.sort(entries, KEY_ORDER);
+
+			DataOutputStream out = createRun(directory);
+			try {
+				for(Entry<String, byte[]> entry : entries) {
+					writeRecord(out, entry.getKey(), entry.getValue());
+				}
+			} finally {
+				out.close();
+			}
+
+			this.pending.clear();
+			this.matched.clear();
+			this.pendingBytes = 0;
+		}
+
+		/**
+		 * Merge run files until there are few enough to be merged at once.
+		 *
+		 */
+		void reduceRuns(File directory) throws IOException {
+			while(this.runs.size() > MERGE_WIDTH) {
+				List<File> merged = new ArrayList<File>(this.runs.subList(0, MERGE_WIDTH));
+
+				MergedRuns in = new MergedRuns(merged);
+				try {
+					DataOutputStream out = createRun(directory);
+					try {
+						while(in.next()) {
+							writeRecord(out, in.key, in.record);
+						}
+					} finally {
+						out.close();
+					}
+				} finally {
+					in.close();
+				}
+
+				this.runs.removeAll(merged);
+				for(File run : merged) {
+					run.delete();
+				}
+			}
+		}
+
+		private DataOutputStream createRun(File directory) throws IOException {
+			File run = File.createTempFile("records", ".run", directory);
+			this.runs.add(run);
+
+			return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)));
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				this.parser.close();
+			} finally {
+				for(File run : this.runs) {
+					run.delete();
+				}
+
+				this.runs.clear();
+			}
+		}
+
+		private static long size(String key, byte[] record) {
+			return ENTRY_OVERHEAD + 2L * key.length() + record.length;
+		}
+
+		private static void writeRecord(DataOutputStream out, String key, byte[] record) throws IOException {
+			byte[] bytes = key.getBytes(UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+			out.writeInt(record.length);
+			out.write(record);
+		}
+
+	}
+
+	/**
+	 * A run file, read one record at a time.
+	 *
+	 */
+	private static final class RunReader implements Closeable {
+
+		private final DataInputStream in;
+
+		private String key;
+
+		private byte[] record;
+
+		RunReader(File run) throws IOException {
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run)));
+		}
+
+		/**
+		 * @return <code>false</code> at the end of the run
+		 */
+		boolean advance() throws IOException {
+			int length;
+			try {
+				length = this.in.readInt();
+			} catch(EOFException e) {
+				return false;
+			}
+
+			byte[] bytes = new byte[length];
+			this.in.readFully(bytes);
+			this.key = new String(bytes, UTF_8);
+
+			this.record = new byte[this.in.readInt()];
+			this.in.readFully(this.record);
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.in.close();
+		}
+
+	}
+
+	/**
+	 * The records of several run files, read in key order.
+	 *
+	 */
+	private static final class MergedRuns implements Closeable {
+
+		private final List<RunReader> readers = new ArrayList<RunReader>();
+
+		private final PriorityQueue<RunReader> queue;
+
+		private String key;
+
+		private byte[] record;
+
+		MergedRuns(List<File> runs) throws IOException {
+			this.queue = new PriorityQueue<RunReader>(Math.max(1, runs.size()), new Comparator<RunReader>() {
+
+				@Override
+				public int compare(RunReader reader1, RunReader reader2) {
+					return reader1.key.compareTo(reader2.key);
+				}
+
+			});
+
+			try {
+				for(File run : runs) {
+					RunReader reader = new RunReader(run);
+					this.readers.add(reader);
+
+					if(reader.advance()) {
+						this.queue.add(reader);
+					}
+				}
+			} catch(IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		/**
+		 * @return <code>false</code> once all runs have been read
+		 */
+		boolean next() throws IOException {
+			RunReader reader = this.queue.poll();
+			if(reader == null) {
+				return false;
+			}
+
+			this.key = reader.key;
+			this.record = reader.record;
+
+			if(reader.advance()) {
+				this.queue.add(reader);
+			}
+
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			IOException failure = null;
+			for(RunReader reader : this.readers) {
+				try {
+					reader.close();
+				} catch(IOException e) {
+					failure = e;
+				}
+			}
+
+			if(failure != null) {
+				throw failure;
+			}
+		}
+
+	}
+
+}
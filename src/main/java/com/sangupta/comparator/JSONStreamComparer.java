@@ -0,0 +1,338 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonParser.NumberType;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Compares two JSON token streams in lock-step, without building a tree. Numbers
+ * are compared by value straight from the parser tokens: integral values that fit
+ * a <code>long</code> are compared as primitives, everything else exactly by its
+ * decimal text, or within an epsilon when one is given. NaN and the infinities
+ * equal only themselves, whatever the epsilon.
+ *
+ * The streams may come from any {@link JsonFactory}, including those of binary
+ * formats such as Smile and CBOR, and need not come from the same one.
+ *
+ * Object members are compared as they stream while their keys arrive in the
+ * same order. Once the keys differ, a member is buffered only until the member
+ * of the same key arrives in the other object, and is then compared against
+ * that object's stream.
+ *
+ * Instances hold scratch state and are not thread-safe - create one per comparison.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+final class JSONStreamComparer {
+
+	/**
+	 * Maximum absolute difference for two numbers to be considered equal,
+	 * <code>0</code> for exact comparison
+	 */
+	private final double epsilon;
+
+	private final JSONNumbers.Decimal decimal1 = new JSONNumbers.Decimal();
+
+	private final JSONNumbers.Decimal decimal2 = new JSONNumbers.Decimal();
+
+	private final JSONNumbers.CharView view1 = new JSONNumbers.CharView();
+
+	private final JSONNumbers.CharView view2 = new JSONNumbers.CharView();
+
+	JSONStreamComparer(double epsilon) {
+		this.epsilon = epsilon;
+	}
+
+	/**
+	 * Compare the first value in each of the parsers. Both parsers are closed
+	 * once done.
+	 *
+	 * @return <code>true</code> if the two values are equivalent
+	 */
+	boolean compare(JsonParser parser1, JsonParser parser2) throws IOException {
+		try {
+			JsonToken token1 = parser1.nextToken();
+			JsonToken token2 = parser2.nextToken();
+
+			if(token1 == null || token2 == null) {
+				return token1 == token2;
+			}
+
+			return compareValue(parser1, parser2);
+		} finally {
+			parser1.close();
+			parser2.close();
+		}
+	}
+
+	/**
+	 * Compare the values both parsers currently point to, leaving the parsers on
+	 * the last token of the values.
+	 *
+	 */
+	private boolean compareValue(JsonParser parser1, JsonParser parser2) throws IOException {
+		JsonToken token1 = parser1.getCurrentToken();
+		JsonToken token2 = parser2.getCurrentToken();
+
+		if(token1.isNumeric() && token2.isNumeric()) {
+			return compareNumbers(parser1, parser2);
+		}
+
+		if(token1 != token2) {
+			return compareBinaryAndText(parser1, parser2);
+		}
+
+		switch(token1) {
+			case START_OBJECT:
+				return compareObjects(parser1, parser2);
+
+			case START_ARRAY:
+				return compareArrays(parser1, parser2);
+
+			case VALUE_STRING:
+				return compareText(parser1, parser2);
+
+			case VALUE_EMBEDDED_OBJECT:
+				Object embedded1 = parser1.getEmbeddedObject();
+				Object embedded2 = parser2.getEmbeddedObject();
+				if(embedded1 instanceof byte[] && embedded2 instanceof byte[]) {
+					return Arrays.equals((byte[]) embedded1, (byte[]) embedded2);
+				}
+
+				return embedded1 == null ? embedded2 == null : embedded1.equals(embedded2);
+
+			default:
+				// true, false and null carry no value beyond their token
+				return true;
+		}
+	}
+
+	private boolean compareArrays(JsonParser parser1, JsonParser parser2) throws IOException {
+		do {
+			JsonToken token1 = parser1.nextToken();
+			JsonToken token2 = parser2.nextToken();
+
+			if(token1 == JsonToken.END_ARRAY || token2 == JsonToken.END_ARRAY) {
+				return token1 == token2;
+			}
+
+			if(!compareValue(parser1, parser2)) {
+				return false;
+			}
+		} while(true);
+	}
+
+	private boolean compareObjects(JsonParser parser1, JsonParser parser2) throws IOException {
+		// members waiting for their match in the other object, by key - only
+		// created once the order of keys first differs. Keys are compared as the
+		// names parsers already hold, as the Smile parser may return the text
+		// of an earlier name from getTextCharacters()
+		Map<String, TokenBuffer> pending1 = null;
+		Map<String, TokenBuffer> pending2 = null;
+
+		JsonToken token1 = parser1.nextToken();
+		JsonToken token2 = parser2.nextToken();
+		do {
+			boolean end1 = token1 == JsonToken.END_OBJECT;
+			boolean end2 = token2 == JsonToken.END_OBJECT;
+
+			if(end1 && end2) {
+				return pending1 == null || (pending1.isEmpty() && pending2.isEmpty());
+			}
+
+			if((end1 || end2) && pending1 == null) {
+				return false;
+			}
+
+			if(!end1 && !end2 && parser1.getCurrentName().equals(parser2.getCurrentName())) {
+				parser1.nextToken();
+				parser2.nextToken();
+				if(!compareValue(parser1, parser2)) {
+					return false;
+				}
+			} else {
+				if(pending1 == null) {
+					pending1 = new HashMap<String, TokenBuffer>();
+					pending2 = new HashMap<String, TokenBuffer>();
+				}
+
+				if(!end1 && !matchMember(parser1, pending2, pending1)) {
+					return false;
+				}
+
+				if(!end2 && !matchMember(parser2, pending1, pending2)) {
+					return false;
+				}
+			}
+
+			token1 = end1 ? token1 : parser1.nextToken();
+			token2 = end2 ? token2 : parser2.nextToken();
+		} while(true);
+	}
+
+	/**
+	 * Match the member the parser points to, starting at its field name, with the
+	 * member of the same key already buffered from the other object. The member
+	 * is buffered itself if the other object has not reached its key yet. The
+	 * parser is left on the last token of the value.
+	 *
+	 */
+	private boolean matchMember(JsonParser parser, Map<String, TokenBuffer> otherPending, Map<String, TokenBuffer> pending) throws IOException {
+		String key = parser.getCurrentName();
+		parser.nextToken();
+
+		TokenBuffer other = otherPending.remove(key);
+		if(other == null) {
+			pending.put(key, bufferValue(parser));
+			return true;
+		}
+
+		JsonParser otherParser = other.asParser();
+		try {
+			otherParser.nextToken();
+			return compareValue(parser, otherParser);
+		} finally {
+			otherParser.close();
+		}
+	}
+
+	/**
+	 * Copy the tokens of the value the parser points to, leaving the parser on
+	 * its last token. Decimal numbers are kept as {@link java.math.BigDecimal}
+	 * so that no precision is lost.
+	 *
+	 */
+	private static TokenBuffer bufferValue(JsonParser parser) throws IOException {
+		TokenBuffer buffer = new TokenBuffer(parser.getCodec(), false);
+		int depth = 0;
+		do {
+			JsonToken token = parser.getCurrentToken();
+			if(token == JsonToken.VALUE_NUMBER_FLOAT && !parser.isNaN()) {
+				buffer.writeNumber(parser.getDecimalValue());
+			} else {
+				buffer.copyCurrentEvent(parser);
+			}
+
+			if(token.isStructStart()) {
+				depth++;
+			} else if(token.isStructEnd()) {
+				depth--;
+			}
+
+			if(depth == 0) {
+				return buffer;
+			}
+
+			parser.nextToken();
+		} while(true);
+	}
+
+	/**
+	 * Compare a binary value with a text value, as a binary format meets a text
+	 * format holding the Base64 encoding of the same bytes.
+	 *
+	 */
+	private static boolean compareBinaryAndText(JsonParser parser1, JsonParser parser2) throws IOException {
+		if(parser1.getCurrentToken() == JsonToken.VALUE_STRING) {
+			return compareBinaryAndText(parser2, parser1);
+		}
+
+		if(parser1.getCurrentToken() != JsonToken.VALUE_EMBEDDED_OBJECT || parser2.getCurrentToken() != JsonToken.VALUE_STRING) {
+			return false;
+		}
+
+		Object embedded = parser1.getEmbeddedObject();
+		if(!(embedded instanceof byte[])) {
+			return false;
+		}
+
+		byte[] decoded;
+		try {
+			decoded = parser2.getBinaryValue();
+		} catch(JsonParseException e) {
+			// not Base64 text
+			return false;
+		}
+
+		return Arrays.equals((byte[]) embedded, decoded);
+	}
+
+	private boolean compareNumbers(JsonParser parser1, JsonParser parser2) throws IOException {
+		if(parser1.getCurrentToken() == JsonToken.VALUE_NUMBER_INT && parser2.getCurrentToken() == JsonToken.VALUE_NUMBER_INT) {
+			NumberType type1 = parser1.getNumberType();
+			NumberType type2 = parser2.getNumberType();
+
+			if(type1 != NumberType.BIG_INTEGER && type2 != NumberType.BIG_INTEGER) {
+				long value1 = parser1.getLongValue();
+				long value2 = parser2.getLongValue();
+
+				if(value1 == value2) {
+					return true;
+				}
+
+				return this.epsilon > 0 && Math.abs((double) value1 - (double) value2) <= this.epsilon;
+			}
+		}
+
+		if(isNonFinite(parser1) || isNonFinite(parser2)) {
+			// NaN and the infinities only equal themselves, and have no decimal text
+			return Double.compare(parser1.getDoubleValue(), parser2.getDoubleValue()) == 0;
+		}
+
+		if(this.epsilon > 0) {
+			return Math.abs(parser1.getDoubleValue() - parser2.getDoubleValue()) <= this.epsilon;
+		}
+
+		return JSONNumbers.equalValue(this.view1.of(parser1.getTextCharacters()), parser1.getTextOffset(), parser1.getTextLength(), this.decimal1,
+				this.view2.of(parser2.getTextCharacters()), parser2.getTextOffset(), parser2.getTextLength(), this.decimal2);
+	}
+
+	/**
+	 * Whether the parser points to NaN or an infinity, as binary formats and
+	 * lenient text parsers allow.
+	 *
+	 */
+	private static boolean isNonFinite(JsonParser parser) throws IOException {
+		return parser.getCurrentToken() == JsonToken.VALUE_NUMBER_FLOAT && parser.isNaN();
+	}
+
+	/**
+	 * Compare the text of the current tokens without materializing it as a {@link String}.
+	 *
+	 */
+	private static boolean compareText(JsonParser parser1, JsonParser parser2) throws IOException {
+		return JSONNumbers.equalText(parser1.getTextCharacters(), parser1.getTextOffset(), parser1.getTextLength(),
+				parser2.getTextCharacters(), parser2.getTextOffset(), parser2.getTextLength());
+	}
+
+}
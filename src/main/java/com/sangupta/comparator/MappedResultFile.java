@@ -0,0 +1,286 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/**
+ * An append-only file of comparison results keyed by 128-bit fingerprints,
+ * accessed through a memory mapping. The file holds a header followed by
+ * fixed-size entries; an entry is complete once its last byte, the result, is
+ * written, so entries cut short when the process dies are ignored when the file
+ * is opened again. An index of the entries, holding only their positions, is
+ * kept on the heap.
+ *
+ * Writes reach the disk in no particular order until the file is closed, so this
+ * holds for a crash of the process only: after a crash of the operating system
+ * or a loss of power, entries written since the file was last closed may be
+ * lost or torn, and the file should be discarded.
+ *
+ * The header records the version of the comparers that produced the results.
+ * A file written by comparers of another version is emptied when opened, as
+ * its results may no longer hold.
+ *
+ * A file holds at most {@link #MAX_ENTRIES} results, the most a single mapping
+ * can address; once full, further results are not stored.
+ *
+ * The file is locked while open, and can thus be used by one instance at a time.
+ * Once closed, results can no longer be read or stored.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+final class MappedResultFile implements Closeable {
+
+	private static final long MAGIC = 0x434f4d5041524552L;
+
+	private static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 16;
+
+	/**
+	 * The fingerprint, followed by the result: <code>1</code> when unequal and
+	 * <code>2</code> when equal
+	 */
+	static final int ENTRY_SIZE = 17;
+
+	/**
+	 * The most results a file holds
+	 */
+	static final int MAX_ENTRIES = (Integer.MAX_VALUE - HEADER_SIZE) / ENTRY_SIZE;
+
+	private static final int INITIAL_CAPACITY = 4096;
+
+	private final RandomAccessFile file;
+
+	private final FileChannel channel;
+
+	private final FileLock lock;
+
+	private MappedByteBuffer buffer;
+
+	private int count;
+
+	private boolean closed;
+
+	/**
+	 * Open-addressing table of <code>entry + 1</code>, <code>0</code> for empty slots
+	 */
+	private int[] index = new int[2 * INITIAL_CAPACITY];
+
+	/**
+	 * Open the given file, creating it if needed.
+	 *
+	 * @param resultsVersion
+	 *            the version of the comparers producing the results; a file
+	 *            holding results of another version is emptied
+	 */
+	MappedResultFile(File path, int resultsVersion) throws IOException {
+		this.file = new RandomAccessFile(path, "rw");
+		try {
+			this.channel = this.file.getChannel();
+			this.lock = tryLock(this.channel);
+			if(this.lock == null) {
+				throw new IOException("Result file is in use: " + path);
+			}
+
+			long length = this.file.length();
+			if(length > 0) {
+				if(length < HEADER_SIZE || this.file.readLong() != MAGIC || this.file.readInt() != VERSION) {
+					throw new IOException("Not a result file, or of another version: " + path);
+				}
+
+				if(this.file.readInt() != resultsVersion) {
+					// results of other comparers, which may no longer hold
+					this.file.setLength(0);
+					length = 0;
+				}
+			}
+
+			if(length == 0) {
+				map(HEADER_SIZE + (long) INITIAL_CAPACITY * ENTRY_SIZE);
+				this.buffer.putLong(0, MAGIC);
+				this.buffer.putInt(8, VERSION);
+				this.buffer.putInt(12, resultsVersion);
+				return;
+			}
+
+			map(length);
+
+			int capacity = capacity();
+			while(this.count < capacity && this.buffer.get(position(this.count) + 16) != 0) {
+				addToIndex(this.count++);
+			}
+		} catch(IOException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Return the result stored for the given fingerprint.
+	 *
+	 * @return the result, or <code>null</code> if there is none
+	 *
+	 * @throws IOException
+	 *             if the file is closed
+	 */
+	synchronized Boolean get(long high, long low) throws IOException {
+		ensureOpen();
+
+		int entry = find(high, low);
+		if(entry < 0) {
+			return null;
+		}
+
+		return this.buffer.get(position(entry) + 16) == 2;
+	}
+
+	/**
+	 * Store the result for the given fingerprint, unless one is stored already.
+	 * Results are no longer stored once the file holds {@link #MAX_ENTRIES}.
+	 *
+	 * @throws IOException
+	 *             if the file is closed, or cannot be extended
+	 */
+	synchronized void put(long high, long low, boolean result) throws IOException {
+		ensureOpen();
+
+		if(find(high, low) >= 0) {
+			return;
+		}
+
+		if(this.count == capacity()) {
+			if(this.count == MAX_ENTRIES) {
+				return;
+			}
+
+			map(HEADER_SIZE + (long) Math.min(2L * this.count, MAX_ENTRIES) * ENTRY_SIZE);
+		}
+
+		int position = position(this.count);
+		this.buffer.putLong(position, high);
+		this.buffer.putLong(position + 8, low);
+		this.buffer.put(position + 16, (byte) (result ? 2 : 1));
+
+		addToIndex(this.count++);
+	}
+
+	/**
+	 * @return the number of results stored
+	 */
+	synchronized int size() {
+		return this.count;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if(this.closed) {
+			return;
+		}
+
+		this.closed = true;
+		try {
+			this.buffer.force();
+			this.lock.release();
+		} finally {
+			this.file.close();
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if(this.closed) {
+			throw new IOException("Result file is closed");
+		}
+	}
+
+	private static FileLock tryLock(FileChannel channel) throws IOException {
+		try {
+			return channel.tryLock();
+		} catch(OverlappingFileLockException e) {
+			// locked from within this virtual machine
+			return null;
+		}
+	}
+
+	private void map(long length) throws IOException {
+		// mapping beyond the end of the file extends it
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+	}
+
+	private int capacity() {
+		return (this.buffer.capacity() - HEADER_SIZE) / ENTRY_SIZE;
+	}
+
+	private static int position(int entry) {
+		return HEADER_SIZE + entry * ENTRY_SIZE;
+	}
+
+	private int find(long high, long low) {
+		int mask = this.index.length - 1;
+		for(int slot = slot(high) & mask; this.index[slot] != 0; slot = (slot + 1) & mask) {
+			int entry = this.index[slot] - 1;
+			int position = position(entry);
+			if(this.buffer.getLong(position) == high && this.buffer.getLong(position + 8) == low) {
+				return entry;
+			}
+		}
+
+		return -1;
+	}
+
+	private void addToIndex(int entry) {
+		if(2 * (entry + 1) > this.index.length) {
+			int[] previous = this.index;
+			this.index = new int[previous.length * 2];
+			for(int slot : previous) {
+				if(slot != 0) {
+					insert(slot - 1);
+				}
+			}
+		}
+
+		insert(entry);
+	}
+
+	private void insert(int entry) {
+		int mask = this.index.length - 1;
+		int slot = slot(this.buffer.getLong(position(entry))) & mask;
+		while(this.index[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+
+		this.index[slot] = entry + 1;
+	}
+
+	private static int slot(long high) {
+		return (int) (high ^ (high >>> 32));
+	}
+
+}
@@ -0,0 +1,55 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Shared plumbing for the parallel comparisons.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+final class ParallelSupport {
+
+	private ParallelSupport() {
+		// utility class
+	}
+
+	/**
+	 * Return the pool used when the caller does not supply one. It is created
+	 * on first use, with one worker per available processor; its workers are
+	 * daemon threads and do not keep the JVM alive.
+	 *
+	 * @return the default pool
+	 */
+	static ForkJoinPool getDefaultPool() {
+		return DefaultPoolHolder.POOL;
+	}
+
+	private static final class DefaultPoolHolder {
+
+		static final ForkJoinPool POOL = new ForkJoinPool();
+
+	}
+
+}
@@ -0,0 +1,384 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Checks, before any parsing, whether the raw contents of two inputs are
+ * equal - exactly, or but for whitespace that cannot change the result of the
+ * comparison. The very common case of identical outputs thus never reaches
+ * the parsers. A check returning <code>false</code> is inconclusive: the
+ * inputs must then be parsed and compared.
+ *
+ * Inputs found equal are only as well-formed as either of them. Where the
+ * parsers may reject input, as for JSON and XML, one of the inputs is thus
+ * still read through, without building it, so that malformed inputs fail
+ * just as when both are parsed. HTML is parsed leniently and never fails.
+ *
+ * Exact equality of arrays is found through {@link Mismatch}. Whitespace is
+ * only skipped in bytes when both inputs are in an encoding compatible with
+ * ASCII, as detected from their first bytes.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+final class RawPreCheck {
+
+	private RawPreCheck() {
+		// utility class
+	}
+
+	/**
+	 * Check if two JSON texts are equal but for whitespace between tokens.
+	 * Texts holding comments are not checked beyond exact equality, as line
+	 * breaks end comments.
+	 *
+	 */
+	static boolean jsonEquals(Text text1, Text text2) {
+		if(text1.contentEquals(text2)) {
+			return true;
+		}
+
+		if(!text1.isAsciiCompatible() || !text2.isAsciiCompatible()) {
+			return false;
+		}
+
+		final int length1 = text1.length();
+		final int length2 = text2.length();
+
+		int index1 = 0;
+		int index2 = 0;
+		int previous = -1;
+		boolean inString = false;
+		while(true) {
+			if(!inString) {
+				int start1 = index1;
+				int start2 = index2;
+				index1 = skipWhitespace(text1, index1, length1);
+				index2 = skipWhitespace(text2, index2, length2);
+
+				if((index1 > start1) != (index2 > start2) && index1 < length1 && isWord(previous) && isWord(text1.charAt(index1))) {
+					// whitespace separating two tokens on one side only, as in "1 2" and "12"
+					return false;
+				}
+			}
+
+			if(index1 == length1 || index2 == length2) {
+				return index1 == length1 && index2 == length2;
+			}
+
+			int ch = text1.charAt(index1++);
+			if(ch != text2.charAt(index2++)) {
+				return false;
+			}
+
+			if(inString) {
+				if(ch == '"') {
+					inString = false;
+				} else if(ch == '\\') {
+					// the escaped char, which may be a quote
+					if(index1 == length1 || index2 == length2) {
+						return index1 == length1 && index2 == length2;
+					}
+
+					if(text1.charAt(index1++) != text2.charAt(index2++)) {
+						return false;
+					}
+				}
+			} else if(ch == '"') {
+				inString = true;
+			} else if(ch == '/') {
+				// a comment
+				return false;
+			}
+
+			previous = ch;
+		}
+	}
+
+	/**
+	 * Check if two markup texts are equal but for whitespace at their end, and
+	 * optionally at their start.
+	 *
+	 */
+	static boolean markupEquals(Text text1, Text text2, boolean leading) {
+		if(text1.contentEquals(text2)) {
+			return true;
+		}
+
+		if(!text1.isAsciiCompatible() || !text2.isAsciiCompatible()) {
+			return false;
+		}
+
+		int start1 = leading ? skipWhitespace(text1, 0, text1.length()) : 0;
+		int start2 = leading ? skipWhitespace(text2, 0, text2.length()) : 0;
+
+		int end1 = text1.length();
+		while(end1 > start1 && isWhitespace(text1.charAt(end1 - 1))) {
+			end1--;
+		}
+
+		int end2 = text2.length();
+		while(end2 > start2 && isWhitespace(text2.charAt(end2 - 1))) {
+			end2--;
+		}
+
+		return end1 - start1 == end2 - start2 && text1.regionEquals(start1, text2, start2, end1 - start1);
+	}
+
+	/**
+	 * Check if two buffers hold the same bytes. Buffers backed by arrays are
+	 * checked as with {@link #jsonEquals(Text, Text)} when <code>json</code>
+	 * is set, and as with {@link #markupEquals(Text, Text, boolean)} otherwise.
+	 *
+	 */
+	static boolean bufferEquals(ByteBuffer buffer1, ByteBuffer buffer2, boolean json, boolean leading) {
+		if(!buffer1.hasArray() || !buffer2.hasArray()) {
+			return buffer1.equals(buffer2);
+		}
+
+		Text text1 = of(buffer1.array(), buffer1.arrayOffset() + buffer1.position(), buffer1.remaining());
+		Text text2 = of(buffer2.array(), buffer2.arrayOffset() + buffer2.position(), buffer2.remaining());
+
+		return json ? jsonEquals(text1, text2) : markupEquals(text1, text2, leading);
+	}
+
+	static Text of(CharSequence text) {
+		return new SequenceText(text);
+	}
+
+	static Text of(char[] chars, int offset, int length) {
+		return new CharsText(chars, offset, length);
+	}
+
+	static Text of(byte[] bytes, int offset, int length) {
+		return new BytesText(bytes, offset, length);
+	}
+
+	private static int skipWhitespace(Text text, int index, int length) {
+		while(index < length && isWhitespace(text.charAt(index))) {
+			index++;
+		}
+
+		return index;
+	}
+
+	/**
+	 * The whitespace of JSON, which is also that of XML
+	 *
+	 */
+	private static boolean isWhitespace(int ch) {
+		return ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t';
+	}
+
+	/**
+	 * Check if the char, outside strings, may belong to a token that would run
+	 * into the next one without whitespace in between
+	 *
+	 */
+	private static boolean isWord(int ch) {
+		switch(ch) {
+			case -1:
+			case '{':
+			case '}':
+			case '[':
+			case ']':
+			case ',':
+			case ':':
+			case '"':
+				return false;
+
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Raw input, read as chars, or as bytes widened to chars
+	 *
+	 */
+	abstract static class Text {
+
+		abstract int length();
+
+		abstract int charAt(int index);
+
+		/**
+		 * Check if the ranges of this and the other text are equal. Ranges of
+		 * texts of another kind are never equal.
+		 *
+		 */
+		abstract boolean regionEquals(int offset, Text other, int otherOffset, int length);
+
+		/**
+		 * @return <code>false</code> if whitespace cannot be read as single
+		 *         units of the text
+		 */
+		boolean isAsciiCompatible() {
+			return true;
+		}
+
+		boolean contentEquals(Text other) {
+			return length() == other.length() && regionEquals(0, other, 0, length());
+		}
+
+	}
+
+	private static final class SequenceText extends Text {
+
+		private final CharSequence text;
+
+		SequenceText(CharSequence text) {
+			this.text = text;
+		}
+
+		@Override
+		int length() {
+			return this.text.length();
+		}
+
+		@Override
+		int charAt(int index) {
+			return this.text.charAt(index);
+		}
+
+		@Override
+		boolean regionEquals(int offset, Text other, int otherOffset, int length) {
+			if(!(other instanceof SequenceText)) {
+				return false;
+			}
+
+			CharSequence otherText = ((SequenceText) other).text;
+			if(this.text instanceof String && otherText instanceof String) {
+				return ((String) this.text).regionMatches(offset, (String) otherText, otherOffset, length);
+			}
+
+			for(int index = 0; index < length; index++) {
+				if(this.text.charAt(offset + index) != otherText.charAt(otherOffset + index)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+	}
+
+	private static final class CharsText extends Text {
+
+		private final char[] chars;
+
+		private final int offset;
+
+		private final int length;
+
+		CharsText(char[] chars, int offset, int length) {
+			this.chars = chars;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		int length() {
+			return this.length;
+		}
+
+		@Override
+		int charAt(int index) {
+			return this.chars[this.offset + index];
+		}
+
+		@Override
+		boolean regionEquals(int offset, Text other, int otherOffset, int length) {
+			if(!(other instanceof CharsText)) {
+				return false;
+			}
+
+			CharsText otherChars = (CharsText) other;
+			return Mismatch.mismatch(this.chars, this.offset + offset, otherChars.chars, otherChars.offset + otherOffset, length) < 0;
+		}
+
+	}
+
+	private static final class BytesText extends Text {
+
+		private final byte[] bytes;
+
+		private final int offset;
+
+		private final int length;
+
+		BytesText(byte[] bytes, int offset, int length) {
+			this.bytes = bytes;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		int length() {
+			return this.length;
+		}
+
+		@Override
+		int charAt(int index) {
+			return this.bytes[this.offset + index] & 0xff;
+		}
+
+		@Override
+		boolean regionEquals(int offset, Text other, int otherOffset, int length) {
+			if(!(other instanceof BytesText)) {
+				return false;
+			}
+
+			BytesText otherBytes = (BytesText) other;
+			return Mismatch.mismatch(this.bytes, this.offset + offset, otherBytes.bytes, otherBytes.offset + otherOffset, length) < 0;
+		}
+
+		/**
+		 * UTF-16 and UTF-32 start with a byte order mark, or hold a zero byte
+		 * within the first four bytes of any text starting with an ASCII char;
+		 * bytes of multi-byte chars in UTF-8 are never whitespace nor quotes.
+		 *
+		 */
+		@Override
+		boolean isAsciiCompatible() {
+			if(this.length >= 2) {
+				int bom = charAt(0) << 8 | charAt(1);
+				if(bom == 0xfeff || bom == 0xfffe) {
+					return false;
+				}
+			}
+
+			int limit = Math.min(this.length, 4);
+			for(int index = 0; index < limit; index++) {
+				if(this.bytes[this.offset + index] == 0) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+	}
+
+}
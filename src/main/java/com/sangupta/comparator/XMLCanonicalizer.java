@@ -0,0 +1,315 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Convert an XML representation into its canonical form, in a single streaming
+ * pass. The form follows the spirit of Canonical XML (C14N): comments are dropped,
+ * CDATA sections become text, empty elements are always written with a start and
+ * an end tag, namespace declarations and attributes are sorted, and text and
+ * attribute values are escaped uniformly.
+ *
+ * Two canonical forms may be compared byte-by-byte using {@link CanonicalComparer}
+ * and may be stored for reuse.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class XMLCanonicalizer {
+
+	/**
+	 * The charset in which the canonical form is emitted
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Canonicalize the given XML string.
+	 *
+	 * @param xml
+	 *            the XML representation
+	 *
+	 * @return the UTF-8 bytes of the canonical form
+	 *
+	 * @throws SAXException
+	 *             if something fails
+	 *
+	 * @throws IOException
+	 *             if something fails
+	 *
+	 * @throws ParserConfigurationException
+	 *             if something fails
+	 */
+	public static byte[] canonicalize(String xml) throws SAXException, IOException, ParserConfigurationException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(xml.length());
+		canonicalize(new InputSource(new StringReader(xml)), out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Canonicalize the XML read from the given {@link InputSource}.
+	 *
+	 * @param source
+	 *            the XML representation
+	 *
+	 * @param out
+	 *            the stream to write UTF-8 bytes of the canonical form to
+	 *
+	 * @throws SAXException
+	 *             if something fails
+	 *
+	 * @throws IOException
+	 *             if something fails
+	 *
+	 * @throws ParserConfigurationException
+	 *             if something fails
+	 */
+	public static void canonicalize(InputSource source, OutputStream out) throws SAXException, IOException, ParserConfigurationException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+		getSAXParser().parse(source, new CanonicalHandler(writer));
+		writer.flush();
+	}
+
+	/**
+	 * Return a new instance of {@link SAXParser}, configured the same way the
+	 * {@link XMLComparer} configures its DOM parser.
+	 *
+	 * @return a new instance of {@link SAXParser}
+	 *
+	 * @throws ParserConfigurationException
+	 *             if something fails
+	 *
+	 * @throws SAXException
+	 *             if something fails
+	 */
+	private static SAXParser getSAXParser() throws ParserConfigurationException, SAXException {
+		SAXParserFactory spf = SAXParserFactory.newInstance();
+		spf.setNamespaceAware(true);
+		return spf.newSAXParser();
+	}
+
+	/**
+	 * SAX handler that writes the canonical form as events arrive. Adjacent text
+	 * and CDATA events are written back-to-back, thus coalescing them, and comments
+	 * never reach a {@link DefaultHandler}.
+	 *
+	 */
+	private static final class CanonicalHandler extends DefaultHandler {
+
+		private final Writer writer;
+
+		/**
+		 * Namespace declarations made on the next element, as prefix/URI pairs
+		 */
+		private final List<String[]> namespaces = new ArrayList<String[]>();
+
+		CanonicalHandler(Writer writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public void startPrefixMapping(String prefix, String uri) {
+			this.namespaces.add(new String[] { prefix, uri });
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, final Attributes attributes) throws SAXException {
+			try {
+				this.writer.write('<');
+				this.writer.write(qName);
+
+				if(!this.namespaces.isEmpty()) {
+					Collections.sort(this.namespaces, new Comparator<String[]>() {
+
+						@Override
+						public int compare(String[] o1, String[] o2) {
+							return o1[0].compareTo(o2[0]);
+						}
+
+					});
+
+					for(String[] namespace : this.namespaces) {
+						this.writer.write(namespace[0].isEmpty() ? " xmlns" : " xmlns:" + namespace[0]);
+						this.writer.write("=\"");
+						writeEscaped(namespace[1], true);
+						this.writer.write('"');
+					}
+
+					this.namespaces.clear();
+				}
+
+				final int count = attributes.getLength();
+				if(count > 0) {
+					// C14N orders attributes by namespace URI, then local name
+					Integer[] order = new Integer[count];
+					for(int index = 0; index < count; index++) {
+						order[index] = index;
+					}
+
+					if(count > 1) {
+						Arrays.sort(order, new Comparator<Integer>() {
+
+							@Override
+							public int compare(Integer o1, Integer o2) {
+								int result = attributes.getURI(o1).compareTo(attributes.getURI(o2));
+								if(result != 0) {
+									return result;
+								}
+
+								return attributes.getLocalName(o1).compareTo(attributes.getLocalName(o2));
+							}
+
+						});
+					}
+
+					for(Integer index : order) {
+						this.writer.write(' ');
+						this.writer.write(attributes.getQName(index));
+						this.writer.write("=\"");
+						writeEscaped(attributes.getValue(index), true);
+						this.writer.write('"');
+					}
+				}
+
+				this.writer.write('>');
+			} catch(IOException e) {
+				throw new SAXException(e);
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			try {
+				this.writer.write("</");
+				this.writer.write(qName);
+				this.writer.write('>');
+			} catch(IOException e) {
+				throw new SAXException(e);
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) throws SAXException {
+			try {
+				final int end = start + length;
+				int from = start;
+				for(int index = start; index < end; index++) {
+					String replacement = textReplacement(ch[index], false);
+					if(replacement != null) {
+						this.writer.write(ch, from, index - from);
+						this.writer.write(replacement);
+						from = index + 1;
+					}
+				}
+
+				this.writer.write(ch, from, end - from);
+			} catch(IOException e) {
+				throw new SAXException(e);
+			}
+		}
+
+		@Override
+		public void processingInstruction(String target, String data) throws SAXException {
+			try {
+				this.writer.write("<?");
+				this.writer.write(target);
+				if(data != null && !data.isEmpty()) {
+					this.writer.write(' ');
+					this.writer.write(data);
+				}
+				this.writer.write("?>");
+			} catch(IOException e) {
+				throw new SAXException(e);
+			}
+		}
+
+		private void writeEscaped(String value, boolean attribute) throws IOException {
+			final int length = value.length();
+			for(int index = 0; index < length; index++) {
+				char c = value.charAt(index);
+				String replacement = textReplacement(c, attribute);
+				if(replacement != null) {
+					this.writer.write(replacement);
+				} else {
+					this.writer.write(c);
+				}
+			}
+		}
+
+		/**
+		 * The C14N replacement for the given character, or <code>null</code>
+		 * if it is written as is.
+		 *
+		 */
+		private static String textReplacement(char c, boolean attribute) {
+			switch(c) {
+				case '&':
+					return "&amp;";
+
+				case '<':
+					return "&lt;";
+
+				case '>':
+					return attribute ? null : "&gt;";
+
+				case '"':
+					return attribute ? "&quot;" : null;
+
+				case '\t':
+					return attribute ? "&#x9;" : null;
+
+				case '\n':
+					return attribute ? "&#xA;" : null;
+
+				case '\r':
+					return "&#xD;";
+
+				default:
+					return null;
+			}
+		}
+
+	}
+
+}
@@ -21,18 +21,28 @@
 
 package com.sangupta.comparator;
 
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Compare two given XML inputs for equality by parsing and matching the text contained
@@ -64,8 +74,9 @@ public class XMLComparer {
 			return false;
 		}
 		
-		if(xml1 == xml2) {
-			return true;
+		if(xml1 == xml2 || RawPreCheck.markupEquals(RawPreCheck.of(xml1), RawPreCheck.of(xml2), false)) {
+			// equal but for whitespace after the markup, so both are as well-formed as one of them
+			return checkWellFormed(new InputSource(new StringReader(xml1)));
 		}
 		
 		return compareXml(new StringReader(xml1), new StringReader(xml2));
@@ -160,6 +171,124 @@ public class XMLComparer {
 		return doc1.isEqualNode(doc2);		
 	}
 	
+	/**
+	 * Compare two XML representations held in slices of byte arrays, such as
+	 * pooled buffers. The slices are read in place, without being copied or
+	 * decoded to strings first; the encoding is detected by the parser.
+	 * 
+	 * @param bytes1 the array holding the first representation
+	 * 
+	 * @param offset1 the offset of the first representation in its array
+	 * 
+	 * @param length1 the length of the first representation
+	 * 
+	 * @param bytes2 the array holding the second representation
+	 * 
+	 * @param offset2 the offset of the second representation in its array
+	 * 
+	 * @param length2 the length of the second representation
+	 * 
+	 * @return <code>true</code> if XMLs are markup equivalent, <code>false</code> otherwise.
+	 * 
+	 * @throws SAXException if something fails
+	 * 
+	 * @throws IOException if something fails
+	 * 
+	 * @throws ParserConfigurationException if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareXml(byte[] bytes1, int offset1, int length1, byte[] bytes2, int offset2, int length2) throws SAXException, IOException, ParserConfigurationException {
+		if(bytes1 == null || bytes2 == null) {
+			return false;
+		}
+		
+		Buffers.checkSlice(bytes1.length, offset1, length1);
+		Buffers.checkSlice(bytes2.length, offset2, length2);
+		
+		if((bytes1 == bytes2 && offset1 == offset2 && length1 == length2) || RawPreCheck.markupEquals(RawPreCheck.of(bytes1, offset1, length1), RawPreCheck.of(bytes2, offset2, length2), false)) {
+			// equal but for whitespace after the markup, so both are as well-formed as one of them
+			return checkWellFormed(new InputSource(new ByteArrayInputStream(bytes1, offset1, length1)));
+		}
+		
+		return compareXml(new InputSource(new ByteArrayInputStream(bytes1, offset1, length1)), new InputSource(new ByteArrayInputStream(bytes2, offset2, length2)));
+	}
+	
+	/**
+	 * Compare two XML representations held in slices of char arrays. The slices
+	 * are read in place, without being copied to strings first.
+	 * 
+	 * @param chars1 the array holding the first representation
+	 * 
+	 * @param offset1 the offset of the first representation in its array
+	 * 
+	 * @param length1 the length of the first representation
+	 * 
+	 * @param chars2 the array holding the second representation
+	 * 
+	 * @param offset2 the offset of the second representation in its array
+	 * 
+	 * @param length2 the length of the second representation
+	 * 
+	 * @return <code>true</code> if XMLs are markup equivalent, <code>false</code> otherwise.
+	 * 
+	 * @throws SAXException if something fails
+	 * 
+	 * @throws IOException if something fails
+	 * 
+	 * @throws ParserConfigurationException if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareXml(char[] chars1, int offset1, int length1, char[] chars2, int offset2, int length2) throws SAXException, IOException, ParserConfigurationException {
+		if(chars1 == null || chars2 == null) {
+			return false;
+		}
+		
+		Buffers.checkSlice(chars1.length, offset1, length1);
+		Buffers.checkSlice(chars2.length, offset2, length2);
+		
+		if((chars1 == chars2 && offset1 == offset2 && length1 == length2) || RawPreCheck.markupEquals(RawPreCheck.of(chars1, offset1, length1), RawPreCheck.of(chars2, offset2, length2), false)) {
+			// equal but for whitespace after the markup, so both are as well-formed as one of them
+			return checkWellFormed(new InputSource(new CharArrayReader(chars1, offset1, length1)));
+		}
+		
+		return compareXml(new InputSource(new CharArrayReader(chars1, offset1, length1)), new InputSource(new CharArrayReader(chars2, offset2, length2)));
+	}
+	
+	/**
+	 * Compare two XML representations held in the remaining bytes of the given
+	 * buffers. Buffers backed by an accessible array are read in place; the
+	 * bytes of direct and read-only buffers are read in chunks, never as a
+	 * whole. The positions of the buffers are left untouched.
+	 * 
+	 * @param buffer1 the first representation
+	 * 
+	 * @param buffer2 the second representation
+	 * 
+	 * @return <code>true</code> if XMLs are markup equivalent, <code>false</code> otherwise.
+	 * 
+	 * @throws SAXException if something fails
+	 * 
+	 * @throws IOException if something fails
+	 * 
+	 * @throws ParserConfigurationException if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareXml(ByteBuffer buffer1, ByteBuffer buffer2) throws SAXException, IOException, ParserConfigurationException {
+		if(buffer1 == null || buffer2 == null) {
+			return false;
+		}
+		
+		if(buffer1 == buffer2 || RawPreCheck.bufferEquals(buffer1, buffer2, false, false)) {
+			// equal but for whitespace after the markup, so both are as well-formed as one of them
+			return checkWellFormed(new InputSource(Buffers.newInputStream(buffer1)));
+		}
+		
+		return compareXml(new InputSource(Buffers.newInputStream(buffer1)), new InputSource(Buffers.newInputStream(buffer2)));
+	}
+	
 	/**
 	 * Compare two XML representations quietly, eating up any error thrown during the process (except {@link RuntimeException}).
 	 * 
@@ -256,6 +385,487 @@ public class XMLComparer {
 		return null;
 	}
 	
+	/**
+	 * Compare two XML representations, comparing long element lists in parallel
+	 * on a shared default pool.
+	 * 
+	 * @param xml1 the first representation
+	 * 
+	 * @param xml2 the second representation
+	 * 
+	 * @return <code>true</code> if XMLs are markup equivalent, <code>false</code> otherwise.
+	 * 
+	 * @throws SAXException if something fails
+	 * 
+	 * @throws IOException if something fails
+	 * 
+	 * @throws ParserConfigurationException if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareXmlInParallel(String xml1, String xml2) throws SAXException, IOException, ParserConfigurationException {
+		return compareXmlInParallel(xml1, xml2, ParallelSupport.getDefaultPool());
+	}
+	
+	/**
+	 * Compare two XML representations, comparing long element lists in parallel
+	 * on the given pool.
+	 * 
+	 * @param xml1 the first representation
+	 * 
+	 * @param xml2 the second representation
+	 * 
+	 * @param pool the pool to run the comparison on
+	 * 
+	 * @return <code>true</code> if XMLs are markup equivalent, <code>false</code> otherwise.
+	 * 
+	 * @throws SAXException if something fails
+	 * 
+	 * @throws IOException if something fails
+	 * 
+	 * @throws ParserConfigurationException if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareXmlInParallel(String xml1, String xml2, ForkJoinPool pool) throws SAXException, IOException, ParserConfigurationException {
+		if(xml1 == null || xml2 == null) {
+			return false;
+		}
+		
+		if(xml1 == xml2 || RawPreCheck.markupEquals(RawPreCheck.of(xml1), RawPreCheck.of(xml2), false)) {
+			// equal but for whitespace after the markup, so both are as well-formed as one of them
+			return checkWellFormed(new InputSource(new StringReader(xml1)));
+		}
+		
+		return compareXmlInParallel(new InputSource(new StringReader(xml1)), new InputSource(new StringReader(xml2)), pool);
+	}
+	
+	/**
+	 * Compare two XML representations, comparing long element lists in parallel
+	 * on the given pool. Element lists are split into chunks compared through
+	 * work-stealing, and outstanding chunks are cancelled as soon as one finds a
+	 * difference. Lists below a threshold are compared on the calling thread.
+	 * 
+	 * @param source1 the first representation
+	 * 
+	 * @param source2 the second representation
+	 * 
+	 * @param pool the pool to run the comparison on
+	 * 
+	 * @return <code>true</code> if XMLs are markup equivalent, <code>false</code> otherwise.
+	 * 
+	 * @throws SAXException if something fails
+	 * 
+	 * @throws IOException if something fails
+	 * 
+	 * @throws ParserConfigurationException if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareXmlInParallel(InputSource source1, InputSource source2, ForkJoinPool pool) throws SAXException, IOException, ParserConfigurationException {
+		if(source1 == null || source2 == null) {
+			return false;
+		}
+		
+		if(source1 == source2) {
+			return true;
+		}
+		
+		DocumentBuilder db;
+		try {
+			// expanded DOMs only are safe to read from several threads
+			db = getDocumentBuilder(false);
+		} catch(ParserConfigurationException e) {
+			// the normalization below visits, and thus expands, every node
+			db = getDocumentBuilder();
+		}
+		
+		Document doc1 = db.parse(source1);
+		doc1.normalizeDocument();
+		
+		Document doc2 = db.parse(source2);
+		doc2.normalizeDocument();
+		
+		XMLParallelTask task = XMLParallelTask.forChildren(doc1, doc2, new AtomicBoolean());
+		if(task == null) {
+			return false;
+		}
+		
+		return pool.invoke(task);
+	}
+	
+	/**
+	 * Compare two XML representations, parsing both on the given executor.
+	 * Documents whose root elements have different names are told apart from
+	 * their prologs, and are then only checked to be well-formed rather than
+	 * parsed into trees.
+	 * 
+	 * @param xml1 the first representation
+	 * 
+	 * @param xml2 the second representation
+	 * 
+	 * @param executor the executor to parse the representations on
+	 * 
+	 * @return <code>true</code> if XMLs are markup equivalent, <code>false</code> otherwise.
+	 * 
+	 * @throws SAXException if something fails
+	 * 
+	 * @throws IOException if something fails
+	 * 
+	 * @throws ParserConfigurationException if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareXml(String xml1, String xml2, Executor executor) throws SAXException, IOException, ParserConfigurationException {
+		if(xml1 == null || xml2 == null) {
+			return false;
+		}
+		
+		if(xml1 == xml2 || RawPreCheck.markupEquals(RawPreCheck.of(xml1), RawPreCheck.of(xml2), false)) {
+			// equal but for whitespace after the markup, so both are as well-formed as one of them
+			return checkWellFormed(new InputSource(new StringReader(xml1)));
+		}
+		
+		String root1 = getRootElementName(xml1);
+		String root2 = getRootElementName(xml2);
+		if(root1 != null && root2 != null && !root1.equals(root2)) {
+			// different, but malformed documents must fail here as elsewhere
+			checkWellFormed(xml1, xml2, executor);
+			return false;
+		}
+		
+		return compareXml(new InputSource(new StringReader(xml1)), new InputSource(new StringReader(xml2)), executor);
+	}
+	
+	/**
+	 * Compare two XML representations, parsing both on the given executor.
+	 * 
+	 * @param reader1 the first representation
+	 * 
+	 * @param reader2 the second representation
+	 * 
+	 * @param executor the executor to parse the representations on
+	 * 
+	 * @return <code>true</code> if XMLs are markup equivalent, <code>false</code> otherwise.
+	 * 
+	 * @throws SAXException if something fails
+	 * 
+	 * @throws IOException if something fails
+	 * 
+	 * @throws ParserConfigurationException if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareXml(Reader reader1, Reader reader2, Executor executor) throws SAXException, IOException, ParserConfigurationException {
+		if(reader1 == null || reader2 == null) {
+			return false;
+		}
+		
+		if(reader1 == reader2) {
+			return true;
+		}
+		
+		return compareXml(new InputSource(reader1), new InputSource(reader2), executor);
+	}
+	
+	/**
+	 * Compare two XML representations, parsing both on the given executor.
+	 * 
+	 * @param stream1 the first representation
+	 * 
+	 * @param stream2 the second representation
+	 * 
+	 * @param executor the executor to parse the representations on
+	 * 
+	 * @return <code>true</code> if XMLs are markup equivalent, <code>false</code> otherwise.
+	 * 
+	 * @throws SAXException if something fails
+	 * 
+	 * @throws IOException if something fails
+	 * 
+	 * @throws ParserConfigurationException if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareXml(InputStream stream1, InputStream stream2, Executor executor) throws SAXException, IOException, ParserConfigurationException {
+		if(stream1 == null || stream2 == null) {
+			return false;
+		}
+		
+		if(stream1 == stream2) {
+			return true;
+		}
+		
+		return compareXml(new InputSource(stream1), new InputSource(stream2), executor);
+	}
+	
+	/**
+	 * Compare two XML representations, parsing both on the given executor. If
+	 * either parse fails, the other one is abandoned.
+	 * 
+	 * @param source1 the first representation
+	 * 
+	 * @param source2 the second representation
+	 * 
+	 * @param executor the executor to parse the representations on
+	 * 
+	 * @return <code>true</code> if XMLs are markup equivalent, <code>false</code> otherwise.
+	 * 
+	 * @throws SAXException if something fails
+	 * 
+	 * @throws IOException if something fails
+	 * 
+	 * @throws ParserConfigurationException if something fails
+	 * 
+	 * @since 0.9.1
+	 */
+	public static boolean compareXml(final InputSource source1, final InputSource source2, Executor executor) throws SAXException, IOException, ParserConfigurationException {
+		if(source1 == null || source2 == null) {
+			return false;
+		}
+		
+		if(source1 == source2) {
+			return true;
+		}
+		
+		// a document builder may not be used by two threads at once
+		final DocumentBuilder db1 = getDocumentBuilder();
+		final DocumentBuilder db2 = getDocumentBuilder();
+		
+		ConcurrentParsing.Results<Document> docs = parseBoth(new ConcurrentParsing.Parse<Document>() {
+			
+			@Override
+			Document parse() throws SAXException, IOException {
+				Document doc1 = db1.parse(source1);
+				doc1.normalizeDocument();
+				return doc1;
+			}
+			
+			@Override
+			void close() throws IOException {
+				closeSource(source1);
+			}
+			
+		}, new ConcurrentParsing.Parse<Document>() {
+			
+			@Override
+			Document parse() throws SAXException, IOException {
+				Document doc2 = db2.parse(source2);
+				doc2.normalizeDocument();
+				return doc2;
+			}
+			
+			@Override
+			void close() throws IOException {
+				closeSource(source2);
+			}
+			
+		}, executor);
+		
+		return docs.first.isEqualNode(docs.second);
+	}
+	
+	/**
+	 * Check that both documents are well-formed, without building them, by
+	 * parsing them on the given executor.
+	 * 
+	 */
+	private static void checkWellFormed(final String xml1, final String xml2, Executor executor) throws SAXException, IOException, ParserConfigurationException {
+		// a parser may not be used by two threads at once
+		final SAXParser parser1 = getSAXParser();
+		final SAXParser parser2 = getSAXParser();
+		
+		parseBoth(new ConcurrentParsing.Parse<Object>() {
+			
+			@Override
+			Object parse() throws SAXException, IOException {
+				parser1.parse(new InputSource(new StringReader(xml1)), new DefaultHandler());
+				return null;
+			}
+			
+			@Override
+			void close() {
+				// nothing to close
+			}
+			
+		}, new ConcurrentParsing.Parse<Object>() {
+			
+			@Override
+			Object parse() throws SAXException, IOException {
+				parser2.parse(new InputSource(new StringReader(xml2)), new DefaultHandler());
+				return null;
+			}
+			
+			@Override
+			void close() {
+				// nothing to close
+			}
+			
+		}, executor);
+	}
+	
+	/**
+	 * Check that the document is well-formed, without building it. Used when
+	 * the raw inputs are found equal, so that malformed inputs still fail as
+	 * they do when both are parsed.
+	 * 
+	 * @return <code>true</code>, if the document is well-formed
+	 * 
+	 */
+	private static boolean checkWellFormed(InputSource source) throws SAXException, IOException, ParserConfigurationException {
+		getSAXParser().parse(source, new DefaultHandler());
+		return true;
+	}
+	
+	private static SAXParser getSAXParser() throws ParserConfigurationException {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		try {
+			return factory.newSAXParser();
+		} catch(SAXException e) {
+			throw new ParserConfigurationException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Close the stream of the given source, as parsing it would.
+	 * 
+	 */
+	private static void closeSource(InputSource source) throws IOException {
+		if(source.getCharacterStream() != null) {
+			source.getCharacterStream().close();
+		} else if(source.getByteStream() != null) {
+			source.getByteStream().close();
+		}
+	}
+	
+	private static <T> ConcurrentParsing.Results<T> parseBoth(ConcurrentParsing.Parse<T> parse1, ConcurrentParsing.Parse<T> parse2, Executor executor) throws SAXException, IOException {
+		try {
+			return ConcurrentParsing.parseBoth(executor, parse1, parse2, null);
+		} catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof SAXException) {
+				throw (SAXException) cause;
+			}
+			
+			if(cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			
+			throw ConcurrentParsing.unchecked(cause);
+		}
+	}
+	
+	/**
+	 * Find the qualified name of the root element of the given document by
+	 * skipping over its prolog, without parsing the document.
+	 * 
+	 * @param xml the document
+	 * 
+	 * @return the name of the root element, or <code>null</code> if it cannot
+	 * be determined cheaply
+	 */
+	static String getRootElementName(String xml) {
+		final int length = xml.length();
+		int index = 0;
+		
+		while(index < length) {
+			char ch = xml.charAt(index);
+			if(ch == '\uFEFF' || ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n') {
+				index++;
+				continue;
+			}
+			
+			if(ch != '<') {
+				return null;
+			}
+			
+			if(xml.startsWith("<?", index)) {
+				index = xml.indexOf("?>", index + 2);
+			} else if(xml.startsWith("<!--", index)) {
+				index = xml.indexOf("-->", index + 4);
+			} else if(xml.startsWith("<!DOCTYPE", index)) {
+				index = skipDoctype(xml, index + 9);
+			} else {
+				int end = index + 1;
+				while(end < length && "/> \t\r\n".indexOf(xml.charAt(end)) < 0) {
+					end++;
+				}
+				
+				if(end == index + 1) {
+					return null;
+				}
+				
+				return xml.substring(index + 1, end);
+			}
+			
+			if(index < 0) {
+				return null;
+			}
+			
+			// past the closing '>' of the skipped markup
+			index = xml.indexOf('>', index) + 1;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Find the closing <code>&gt;</code> of a document type declaration.
+	 * 
+	 * @return the index of the closing character, or <code>-1</code> if there
+	 * is none or the declaration has an internal subset
+	 */
+	private static int skipDoctype(String xml, int index) {
+		char quote = 0;
+		for( ; index < xml.length(); index++) {
+			char ch = xml.charAt(index);
+			if(quote != 0) {
+				if(ch == quote) {
+					quote = 0;
+				}
+				
+				continue;
+			}
+			
+			switch(ch) {
+				case '"':
+				case '\'':
+					quote = ch;
+					break;
+					
+				case '[':
+					// an internal subset may itself hold markup
+					return -1;
+					
+				case '>':
+					return index;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Parse and normalize an XML document the way the comparisons do, so that
+	 * it can be compared using {@link Document#isEqualNode(org.w3c.dom.Node)}.
+	 * 
+	 * @param source the document
+	 * 
+	 * @return the parsed document
+	 * 
+	 * @throws SAXException if something fails
+	 * 
+	 * @throws IOException if something fails
+	 * 
+	 * @throws ParserConfigurationException if something fails
+	 */
+	static Document parse(InputSource source) throws SAXException, IOException, ParserConfigurationException {
+		Document document = getDocumentBuilder().parse(source);
+		document.normalizeDocument();
+		return document;
+	}
+	
 	/**
 	 * Return a new instance of {@link DocumentBuilder} that will be used for comparison.
 	 * 
@@ -264,7 +874,24 @@ public class XMLComparer {
 	 * @throws ParserConfigurationException if something fails
 	 */
 	private static DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
+		return getDocumentBuilder(true);
+	}
+	
+	/**
+	 * Return a new instance of {@link DocumentBuilder} that will be used for comparison.
+	 * 
+	 * @param deferNodeExpansion whether the parser may build nodes lazily, on first access
+	 * 
+	 * @return a new instance of {@link DocumentBuilder}
+	 * 
+	 * @throws ParserConfigurationException if something fails, or the parser does not support the feature
+	 */
+	private static DocumentBuilder getDocumentBuilder(boolean deferNodeExpansion) throws ParserConfigurationException {
 		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+		if(!deferNodeExpansion) {
+			dbf.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", false);
+		}
+		
 		dbf.setNamespaceAware(true);
 		dbf.setCoalescing(true);
 		dbf.setIgnoringElementContentWhitespace(true);
@@ -0,0 +1,222 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Compares a range of child nodes of two DOM nodes. Long child lists are split
+ * in halves and compared through work-stealing, descending into a new task for
+ * any element whose own child list is long; everything else is compared
+ * sequentially with the same semantics as {@link Node#isEqualNode(Node)}.
+ *
+ * The documents must be fully built (not deferred) and must not be modified
+ * during the comparison: the DOM is only navigated through
+ * {@link Node#getFirstChild()} and {@link Node#getNextSibling()}, which are
+ * plain reads, never through the caching {@link org.w3c.dom.NodeList}s.
+ *
+ * All tasks of one comparison share a flag that is raised at the first
+ * difference, upon which outstanding tasks stop early or are cancelled.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+final class XMLParallelTask extends RecursiveTask<Boolean> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Number of child nodes below which a child list is compared sequentially
+	 */
+	static final int SEQUENTIAL_THRESHOLD = 512;
+
+	private final Node[] children1;
+
+	private final Node[] children2;
+
+	private final int from;
+
+	private final int to;
+
+	private final AtomicBoolean mismatch;
+
+	XMLParallelTask(Node[] children1, Node[] children2, int from, int to, AtomicBoolean mismatch) {
+		this.children1 = children1;
+		this.children2 = children2;
+		this.from = from;
+		this.to = to;
+		this.mismatch = mismatch;
+	}
+
+	/**
+	 * Create a task comparing all children of the given nodes, or return
+	 * <code>null</code> if the child lists differ in length.
+	 *
+	 */
+	static XMLParallelTask forChildren(Node node1, Node node2, AtomicBoolean mismatch) {
+		int count = countChildren(node1);
+		if(count != countChildren(node2)) {
+			return null;
+		}
+
+		return new XMLParallelTask(listChildren(node1, count), listChildren(node2, count), 0, count, mismatch);
+	}
+
+	@Override
+	protected Boolean compute() {
+		if(this.mismatch.get()) {
+			return false;
+		}
+
+		if(this.to - this.from > SEQUENTIAL_THRESHOLD) {
+			int middle = (this.from + this.to) >>> 1;
+
+			XMLParallelTask left = new XMLParallelTask(this.children1, this.children2, this.from, middle, this.mismatch);
+			left.fork();
+
+			boolean right = new XMLParallelTask(this.children1, this.children2, middle, this.to, this.mismatch).compute();
+			if(!right) {
+				this.mismatch.set(true);
+				left.cancel(false);
+				return false;
+			}
+
+			try {
+				return left.join();
+			} catch(CancellationException e) {
+				return false;
+			}
+		}
+
+		for(int index = this.from; index < this.to; index++) {
+			if(!compareNodes(this.children1[index], this.children2[index])) {
+				this.mismatch.set(true);
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private boolean compareNodes(Node node1, Node node2) {
+		if(this.mismatch.get()) {
+			return false;
+		}
+
+		if(node1.getNodeType() != Node.ELEMENT_NODE) {
+			return node1.isEqualNode(node2);
+		}
+
+		if(!isShallowEqual(node1, node2)) {
+			return false;
+		}
+
+		int count = countChildren(node1);
+		if(count > SEQUENTIAL_THRESHOLD) {
+			XMLParallelTask task = forChildren(node1, node2, this.mismatch);
+			return task != null && task.compute();
+		}
+
+		Node child1 = node1.getFirstChild();
+		Node child2 = node2.getFirstChild();
+		while(child1 != null && child2 != null) {
+			if(!compareNodes(child1, child2)) {
+				return false;
+			}
+
+			child1 = child1.getNextSibling();
+			child2 = child2.getNextSibling();
+		}
+
+		return child1 == null && child2 == null;
+	}
+
+	/**
+	 * Compare two elements, not considering their children, the way
+	 * {@link Node#isEqualNode(Node)} does.
+	 *
+	 */
+	private static boolean isShallowEqual(Node node1, Node node2) {
+		if(node2.getNodeType() != Node.ELEMENT_NODE) {
+			return false;
+		}
+
+		if(!equal(node1.getNodeName(), node2.getNodeName()) || !equal(node1.getLocalName(), node2.getLocalName())
+				|| !equal(node1.getNamespaceURI(), node2.getNamespaceURI()) || !equal(node1.getPrefix(), node2.getPrefix())) {
+			return false;
+		}
+
+		NamedNodeMap attributes1 = node1.getAttributes();
+		NamedNodeMap attributes2 = node2.getAttributes();
+
+		int length = attributes1.getLength();
+		if(length != attributes2.getLength()) {
+			return false;
+		}
+
+		for(int index = 0; index < length; index++) {
+			Attr attribute1 = (Attr) attributes1.item(index);
+			Node attribute2;
+			if(attribute1.getLocalName() == null) {
+				attribute2 = attributes2.getNamedItem(attribute1.getName());
+			} else {
+				attribute2 = attributes2.getNamedItemNS(attribute1.getNamespaceURI(), attribute1.getLocalName());
+			}
+
+			if(attribute2 == null || !attribute1.isEqualNode(attribute2)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static int countChildren(Node node) {
+		int count = 0;
+		for(Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+			count++;
+		}
+
+		return count;
+	}
+
+	private static Node[] listChildren(Node node, int count) {
+		Node[] children = new Node[count];
+		int index = 0;
+		for(Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+			children[index++] = child;
+		}
+
+		return children;
+	}
+
+	private static boolean equal(String value1, String value2) {
+		return value1 == null ? value2 == null : value1.equals(value2);
+	}
+
+}
@@ -0,0 +1,61 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.util.Arrays;
+
+/**
+ * Finds the first difference between two ranges of arrays, using
+ * {@link Arrays#mismatch(byte[], int, int, byte[], int, int)} which the
+ * virtual machine compiles to vector instructions. This is the Java 9 layer
+ * of the multi-release jar.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+final class Mismatch {
+
+	private Mismatch() {
+		// utility class
+	}
+
+	/**
+	 * Find the first difference between two ranges of the same length.
+	 *
+	 * @return the index of the difference, relative to the start of the ranges,
+	 *         or <code>-1</code> if the ranges are equal
+	 */
+	static int mismatch(byte[] bytes1, int offset1, byte[] bytes2, int offset2, int length) {
+		return Arrays.mismatch(bytes1, offset1, offset1 + length, bytes2, offset2, offset2 + length);
+	}
+
+	/**
+	 * Find the first difference between two ranges of the same length.
+	 *
+	 * @return the index of the difference, relative to the start of the ranges,
+	 *         or <code>-1</code> if the ranges are equal
+	 */
+	static int mismatch(char[] chars1, int offset1, char[] chars2, int offset2, int length) {
+		return Arrays.mismatch(chars1, offset1, offset1 + length, chars2, offset2, offset2 + length);
+	}
+
+}
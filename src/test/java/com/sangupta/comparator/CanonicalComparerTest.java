@@ -0,0 +1,102 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+
+/**
+ * Unit tests for {@link CanonicalComparer} and the canonicalizers feeding it.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class CanonicalComparerTest {
+
+	@Test
+	public void testJsonCanonicalForm() throws Exception {
+		Assert.assertEquals("{\"a\":[1,1,100,\"x\\ty\"],\"b\":true}", new String(JSONCanonicalizer.canonicalize("{ \"b\": true, \"a\": [1.0, 1e0, 1E2, \"x\\u0009y\"] }"), "UTF-8"));
+
+		byte[] c1 = JSONCanonicalizer.canonicalize("{ \"short_url\": \"http://drbl.in/hZx\", \"id\": 21 }");
+		byte[] c2 = JSONCanonicalizer.canonicalize("{ \"id\": 21, \"short_url\": \"http://drbl.in/hZx\" }");
+		Assert.assertTrue(CanonicalComparer.compareCanonical(c1, c2));
+		Assert.assertTrue(CanonicalComparer.compareCanonical(new ByteArrayInputStream(c1), new ByteArrayInputStream(c2)));
+
+		Assert.assertFalse(CanonicalComparer.compareCanonical(c1, JSONCanonicalizer.canonicalize("{ \"id\": 22, \"short_url\": \"http://drbl.in/hZx\" }")));
+
+		// elements of a top-level array are written out one at a time
+		Assert.assertEquals("[{\"a\":[{\"c\":1,\"d\":2}],\"b\":1},2]", new String(JSONCanonicalizer.canonicalize("[{ \"b\": 1, \"a\": [{ \"d\": 2, \"c\": 1 }] }, 2.0]"), "UTF-8"));
+
+		// duplicate keys have no canonical form, and comments are rejected as by JSONComparer
+		for(String json : new String[] { "{\"a\":1,\"a\":2}", "{\"b\":1,\"a\":1,\"b\":1}", "[1, /* two */ 2]" }) {
+			try {
+				JSONCanonicalizer.canonicalize(json);
+				Assert.fail("Malformed JSON was not reported: " + json);
+			} catch(JsonParseException e) {
+				// expected
+			}
+		}
+
+		// streams differing past the first chunk
+		byte[] large1 = new byte[20000];
+		byte[] large2 = large1.clone();
+		large2[large2.length - 1] = 1;
+		Assert.assertTrue(CanonicalComparer.compareCanonical(new ByteArrayInputStream(large1), new ByteArrayInputStream(large1.clone())));
+		Assert.assertFalse(CanonicalComparer.compareCanonical(new ByteArrayInputStream(large1), new ByteArrayInputStream(large2)));
+	}
+
+	@Test
+	public void testXmlCanonicalForm() throws Exception {
+		Assert.assertEquals("<hello a=\"1\" mode=\"test\"></hello>", new String(XMLCanonicalizer.canonicalize("<hello mode='test' a=\"1\"/>"), "UTF-8"));
+
+		Assert.assertTrue(CanonicalComparer.compareCanonical(XMLCanonicalizer.canonicalize("<a><![CDATA[x<y]]><!-- note --></a>"), XMLCanonicalizer.canonicalize("<a>x&lt;y</a>")));
+		Assert.assertFalse(CanonicalComparer.compareCanonical(XMLCanonicalizer.canonicalize("<hello />"), XMLCanonicalizer.canonicalize("<hello> </hello>")));
+	}
+
+	@Test
+	public void testHtmlCanonicalForm() throws Exception {
+		byte[] c1 = HTMLCanonicalizer.canonicalize("<b><i>Some</i><hr></hr> more</b>");
+		byte[] c2 = HTMLCanonicalizer.canonicalize(" <b><i>Some</i><hr/>   more</b>");
+		Assert.assertTrue(CanonicalComparer.compareCanonical(c1, c2));
+
+		Assert.assertTrue(CanonicalComparer.compareCanonical(HTMLCanonicalizer.canonicalize("<p title=\"a&amp;b\" id=x>&lt;&#65;</p>"), HTMLCanonicalizer.canonicalize("<p id=\"x\" title=\"a&#38;b\">&lt;A</p>")));
+		Assert.assertFalse(CanonicalComparer.compareCanonical(HTMLCanonicalizer.canonicalize("<p>a</p>"), HTMLCanonicalizer.canonicalize("<p>b</p>")));
+
+		// white space next to tags separates words, as with HTMLComparer
+		Assert.assertFalse(CanonicalComparer.compareCanonical(HTMLCanonicalizer.canonicalize("<p>a <b>x</b></p>"), HTMLCanonicalizer.canonicalize("<p>a<b>x</b></p>")));
+		Assert.assertFalse(HTMLComparer.compareHtml("<p>a <b>x</b></p>", "<p>a<b>x</b></p>"));
+		Assert.assertEquals("<p>a <b>x</b> y</p>", html("\n<p>a \t<b>x</b><!-- c -->\n y</p>\n"));
+
+		// raw text is kept verbatim
+		Assert.assertEquals("<script>a&amp;b</script><p>a&amp;b</p>", html("<script>a&amp;b</script><p>a&amp;b</p>"));
+		Assert.assertEquals("<style>p  { }</style>", html("<style>p  { }</style>"));
+	}
+
+	private static String html(String html) throws Exception {
+		return new String(HTMLCanonicalizer.canonicalize(html), "UTF-8");
+	}
+
+}
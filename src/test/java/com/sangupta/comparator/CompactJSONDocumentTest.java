@@ -0,0 +1,121 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+
+/**
+ * Unit tests for {@link CompactJSONDocument}.
+ * 
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class CompactJSONDocumentTest {
+
+	@Test
+	public void testCompactDocument() throws Exception {
+		CompactJSONDocument baseline = CompactJSONDocument.parse("{ \"short_url\": \"http://drbl.in/hZx\", \"id\": 21, \"tags\": [\"a\", { \"x\": null }] }");
+		Assert.assertEquals(7, baseline.size());
+
+		Assert.assertTrue(JSONComparer.compareJson(baseline, CompactJSONDocument.parse("{ \"tags\": [\"a\", { \"x\": null }], \"id\": 2.1e1, \"short_url\": \"http:\\/\\/drbl.in\\/hZx\" }")));
+		Assert.assertFalse(JSONComparer.compareJson(baseline, CompactJSONDocument.parse("{ \"tags\": [{ \"x\": null }, \"a\"], \"id\": 21, \"short_url\": \"http://drbl.in/hZx\" }")));
+		Assert.assertFalse(JSONComparer.compareJson(baseline, CompactJSONDocument.parse("{ \"id\": 21, \"short_url\": \"http://drbl.in/hZx\" }")));
+		Assert.assertFalse(JSONComparer.compareJson(baseline, null));
+
+		// documents over different pools compare keys by text
+		CompactJSONDocument other = CompactJSONDocument.parse("{ \"id\": 21, \"tags\": [\"a\", { \"x\": null }], \"short_url\": \"http://drbl.in/hZx\" }", new JSONKeyPool());
+		Assert.assertTrue(baseline.equivalentTo(other));
+	}
+
+	@Test(expected = JsonParseException.class)
+	public void testMalformedDocument() throws Exception {
+		CompactJSONDocument.parse("{ \"a\": [1, 2 }");
+	}
+
+	@Test
+	public void testStrictGrammar() throws Exception {
+		String[] malformed = { "[1.]", "[01]", "[-]", "[1e]", "[1e+]", "[.5]", "[+1]", "[\"\\q\"]", "[\"\\u12g4\"]", "[\"\\u12\"]",
+				"[\"a\tb\"]", "[1] x", "[1]]", "{ \"a\": 1 } {}", "1 2", "{ \"a\" 1 }", "[1,]", "" };
+
+		for(String json : malformed) {
+			try {
+				CompactJSONDocument.parse(json);
+				Assert.fail("Accepted malformed JSON: " + json);
+			} catch(JsonParseException e) {
+				// expected
+			}
+		}
+
+		Assert.assertTrue(JSONComparer.compareJson(CompactJSONDocument.parse("[0, -0.5, 1E+2, \"\\u00e9\\n\"] // done"), CompactJSONDocument.parse("[0.0, -5e-1, 100, \"\u00e9\\u000A\"]")));
+	}
+
+	@Test
+	public void testDeepNesting() throws Exception {
+		final int depth = 20000;
+
+		StringBuilder builder = new StringBuilder();
+		for(int index = 0; index < depth; index++) {
+			builder.append(index % 2 == 0 ? "[" : "{\"a\":");
+		}
+
+		builder.append("1");
+		for(int index = depth - 1; index >= 0; index--) {
+			builder.append(index % 2 == 0 ? "]" : "}");
+		}
+
+		CompactJSONDocument document = CompactJSONDocument.parse(builder.toString());
+		Assert.assertEquals(depth + 1, document.size());
+		Assert.assertTrue(document.equivalentTo(CompactJSONDocument.parse(builder.toString())));
+		Assert.assertTrue(document.equivalentTo(CompactJSONDocument.parse(builder.toString(), new JSONKeyPool())));
+		Assert.assertTrue(document.equivalentTo(CompactJSONDocument.parse(builder.toString()), ForkJoinPool.commonPool()));
+		Assert.assertFalse(document.equivalentTo(CompactJSONDocument.parse(builder.toString().replace("1", "2")), ForkJoinPool.commonPool()));
+	}
+
+	@Test
+	public void testBoundedKeyPool() throws Exception {
+		JSONKeyPool pool = new JSONKeyPool(2);
+		CompactJSONDocument baseline = CompactJSONDocument.parse("{ \"a\": 1, \"b\": 2 }", pool);
+		Assert.assertEquals(2, pool.size());
+
+		// keys the full pool does not hold get a pool of their own
+		CompactJSONDocument other = CompactJSONDocument.parse("{ \"b\": 2, \"a\": 1, \"c\": 3 }", pool);
+		Assert.assertEquals(2, pool.size());
+		Assert.assertFalse(baseline.equivalentTo(other));
+		Assert.assertTrue(other.equivalentTo(CompactJSONDocument.parse("{ \"c\": 3, \"a\": 1.0, \"b\": 2 }", pool)));
+		Assert.assertTrue(baseline.equivalentTo(CompactJSONDocument.parse("{ \"b\": 2, \"a\": 1 }", pool)));
+		Assert.assertEquals(-1, pool.getId("c", 0, 1));
+		Assert.assertEquals(-1, pool.findId("c", 0, 1));
+		Assert.assertSame(pool, baseline.getKeyPool());
+		Assert.assertNotSame(pool, other.getKeyPool());
+
+		// members of documents over different pools are paired by key, repeated keys in order
+		Assert.assertTrue(CompactJSONDocument.parse("{ \"a\": 1, \"a\": 2, \"b\": 3 }", new JSONKeyPool()).equivalentTo(CompactJSONDocument.parse("{ \"b\": 3, \"a\": 1, \"a\": 2 }", new JSONKeyPool())));
+		Assert.assertFalse(CompactJSONDocument.parse("{ \"a\": 1, \"a\": 2 }", new JSONKeyPool()).equivalentTo(CompactJSONDocument.parse("{ \"a\": 2, \"a\": 1 }", new JSONKeyPool())));
+		Assert.assertFalse(CompactJSONDocument.parse("{ \"a\": 1, \"a\": 2 }", new JSONKeyPool()).equivalentTo(CompactJSONDocument.parse("{ \"a\": 1, \"b\": 2 }", new JSONKeyPool())));
+	}
+
+}
@@ -0,0 +1,893 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Stress tests running the comparers from many threads over generated large
+ * and adversarial documents. Every comparison is checked against its expected
+ * result, so that state shared across threads shows up as wrong results or
+ * failures: that of the comparers themselves, the shared executor and
+ * fork-join pool, a shared {@link ComparisonCache}, and the shared
+ * {@link JSONKeyPool#DEFAULT}. The bytes allocated per comparison are checked
+ * against the budgets in <code>comparer-budgets.properties</code>.
+ * 
+ * The default build never checks the scaling budgets: throughput at each
+ * number of threads depends on the machine and its load, so it is only
+ * measured and checked when the system property
+ * <code>comparator.stress.throughput</code> is set to <code>true</code>. The
+ * measured numbers are only reported in the message of a failed check.
+ * 
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class ComparerStressTest {
+
+	private static final long SEED = 0x5eed;
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+	private static final int ROUNDS = 2;
+
+	private static final String THROUGHPUT_PROPERTY = "comparator.stress.throughput";
+
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * The executor the executor-based comparisons parse on
+	 */
+	private static ExecutorService executor;
+
+	/**
+	 * The cache shared by the cached comparisons, small enough to evict
+	 */
+	private static ComparisonCache cache;
+
+	@BeforeClass
+	public static void setUp() throws IOException {
+		executor = Executors.newFixedThreadPool(4);
+		cache = new ComparisonCache(4, new File(folder.getRoot(), "stress.cache"));
+	}
+
+	@AfterClass
+	public static void tearDown() throws IOException {
+		executor.shutdownNow();
+		cache.close();
+	}
+
+	@Test
+	public void testConcurrentComparisons() throws Exception {
+		List<Case> corpus = withVariants(generateCorpus());
+
+		for(int threads = 1; threads <= maxThreads(); threads *= 2) {
+			run(corpus, threads, ROUNDS);
+		}
+	}
+
+	@Test
+	public void testSharedKeyPool() throws Exception {
+		// documents over keys shared across them, so that threads race to add them
+		Random random = new Random(SEED);
+		final List<String> documents = new ArrayList<String>();
+		final List<String> reordered = new ArrayList<String>();
+		for(int index = 0; index < 300; index++) {
+			ObjectNode document = NODES.objectNode();
+			for(int member = 0; member < 20; member++) {
+				document.put("stress-key-" + random.nextInt(3000), random.nextInt(100));
+			}
+
+			documents.add(MAPPER.writeValueAsString(document));
+			reordered.add(MAPPER.writeValueAsString(reordered(document)));
+		}
+
+		int threads = maxThreads();
+		final CyclicBarrier barrier = new CyclicBarrier(threads);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<List<CompactJSONDocument>>> futures = new ArrayList<Future<List<CompactJSONDocument>>>();
+			for(int thread = 0; thread < threads; thread++) {
+				final Random order = new Random(SEED + thread);
+				futures.add(pool.submit(new Callable<List<CompactJSONDocument>>() {
+
+					@Override
+					public List<CompactJSONDocument> call() throws Exception {
+						List<Integer> indexes = new ArrayList<Integer>();
+						for(int index = 0; index < documents.size(); index++) {
+							indexes.add(index);
+						}
+						Collections.shuffle(indexes, order);
+
+						barrier.await();
+						CompactJSONDocument[] parsed = new CompactJSONDocument[documents.size()];
+						for(int index : indexes) {
+							parsed[index] = CompactJSONDocument.parse(documents.get(index));
+							Assert.assertTrue(JSONComparer.compareJson(parsed[index], CompactJSONDocument.parse(reordered.get(index))));
+						}
+
+						return Arrays.asList(parsed);
+					}
+
+				}));
+			}
+
+			// documents parsed on different threads share their key ids
+			List<CompactJSONDocument> first = futures.get(0).get();
+			for(Future<List<CompactJSONDocument>> future : futures) {
+				List<CompactJSONDocument> parsed = future.get();
+				for(int index = 0; index < documents.size(); index++) {
+					Assert.assertTrue(first.get(index).equivalentTo(parsed.get(index)));
+					Assert.assertTrue(JSONComparer.compareJson(first.get((index + 1) % documents.size()), parsed.get((index + 1) % documents.size())));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		for(int index = 0; index < 3000; index++) {
+			String key = "stress-key-" + index;
+			int id = JSONKeyPool.DEFAULT.getId(key, 0, key.length());
+			Assert.assertEquals(key, JSONKeyPool.DEFAULT.getKey(id));
+		}
+	}
+
+	@Test
+	public void testThroughputScaling() throws Exception {
+		Assume.assumeTrue("Set -D" + THROUGHPUT_PROPERTY + "=true to measure throughput", Boolean.getBoolean(THROUGHPUT_PROPERTY));
+
+		Properties budgets = loadBudgets();
+		List<Case> corpus = generateCorpus();
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		int maxThreads = maxThreads();
+
+		// warm up, checking every case on a single thread first
+		runQuietly(corpus, 1, ROUNDS);
+
+		double baseline = 0;
+		for(int threads = 1; threads <= maxThreads; threads *= 2) {
+			long start = System.nanoTime();
+			int comparisons = runQuietly(corpus, threads, ROUNDS);
+			double throughput = comparisons * 1e9 / (System.nanoTime() - start);
+
+			if(threads == 1) {
+				baseline = throughput;
+			}
+
+			double scaling = throughput / baseline;
+			String measured = String.format("%.1f comparisons/s with %d threads, %.1f with one", throughput, threads, baseline);
+
+			if(threads <= processors) {
+				double minimum = threads * budget(budgets, "scaling.minEfficiency");
+				Assert.assertTrue("Throughput with " + threads + " threads scales by " + scaling + ", below " + minimum + ": " + measured, scaling >= minimum);
+			} else {
+				double minimum = budget(budgets, "oversubscribed.minScaling");
+				Assert.assertTrue("Throughput with " + threads + " threads on " + processors + " processors drops to " + scaling + ", below " + minimum + ": " + measured, scaling >= minimum);
+			}
+		}
+	}
+
+	@Test
+	public void testAllocationPerComparison() throws Exception {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		Properties budgets = loadBudgets();
+		long id = Thread.currentThread().getId();
+		for(Case test : generateCorpus()) {
+			String key = "allocation." + test.name;
+			if(!budgets.containsKey(key)) {
+				continue;
+			}
+
+			for(int index = 0; index < 10; index++) {
+				test.check();
+			}
+
+			final int count = 10;
+			long before = threads.getThreadAllocatedBytes(id);
+			for(int index = 0; index < count; index++) {
+				test.check();
+			}
+			long perComparison = (threads.getThreadAllocatedBytes(id) - before) / count;
+
+			long input = 2L * (test.input1.length() + test.input2.length());
+
+			double limit = budget(budgets, key);
+			Assert.assertTrue(test.name + " allocates " + perComparison + " bytes per comparison of " + input + " input bytes, over the budget of " + (long) limit, perComparison <= limit);
+		}
+	}
+
+	/**
+	 * Run all cases as with {@link #run(List, int, int)}, discarding what the
+	 * comparers print: the HTML comparer prints the differences it finds, which
+	 * would serialize the threads on {@link System#out}.
+	 * 
+	 * @return the number of comparisons run
+	 */
+	private static int runQuietly(List<Case> corpus, int threads, int rounds) throws Exception {
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+
+			@Override
+			public void write(int b) {
+				// discard
+			}
+
+			@Override
+			public void write(byte[] bytes, int offset, int length) {
+				// discard
+			}
+
+		}));
+
+		try {
+			return run(corpus, threads, rounds);
+		} finally {
+			System.setOut(out);
+		}
+	}
+
+	/**
+	 * Run all cases from the given number of threads, each going over the cases
+	 * in its own order, started together.
+	 * 
+	 * @return the number of comparisons run
+	 */
+	private static int run(final List<Case> corpus, final int threads, final int rounds) throws Exception {
+		final Queue<String> failures = new ConcurrentLinkedQueue<String>();
+		final CyclicBarrier barrier = new CyclicBarrier(threads);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for(int thread = 0; thread < threads; thread++) {
+				final List<Case> order = new ArrayList<Case>(corpus);
+				Collections.shuffle(order, new Random(SEED + thread));
+
+				futures.add(executor.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						barrier.await();
+						for(int round = 0; round < rounds; round++) {
+							for(Case test : order) {
+								String failure = test.check();
+								if(failure != null) {
+									failures.add(failure);
+								}
+							}
+						}
+
+						return null;
+					}
+
+				}));
+			}
+
+			for(Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		if(!failures.isEmpty()) {
+			Assert.fail(failures.size() + " comparisons failed with " + threads + " threads, first: " + failures.peek());
+		}
+
+		return threads * rounds * corpus.size();
+	}
+
+	private static int maxThreads() {
+		int processors = Runtime.getRuntime().availableProcessors();
+		return Math.max(4, Math.min(8, 2 * processors));
+	}
+
+	private static Properties loadBudgets() throws IOException {
+		InputStream stream = ComparerStressTest.class.getResourceAsStream("/comparer-budgets.properties");
+		Assert.assertNotNull("Budgets not found", stream);
+
+		Properties budgets = new Properties();
+		try {
+			budgets.load(stream);
+		} finally {
+			stream.close();
+		}
+
+		return budgets;
+	}
+
+	private static double budget(Properties budgets, String key) {
+		String value = budgets.getProperty(key);
+		Assert.assertNotNull("No budget for " + key, value);
+		return Double.parseDouble(value.trim());
+	}
+
+	// --------------------------------------------------------------------------
+	// Corpus
+	// --------------------------------------------------------------------------
+
+	private static List<Case> generateCorpus() throws IOException {
+		Random random = new Random(SEED);
+		List<Case> corpus = new ArrayList<Case>();
+
+		// large JSON - members reordered and pretty printed, or one leaf changed
+		JsonNode json = randomObject(random, 5, 8);
+		String compact = MAPPER.writeValueAsString(json);
+		corpus.add(new Case(Kind.JSON, "json-large", compact, MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(reordered(json)), true));
+		corpus.add(new Case(Kind.JSON, "json-large-changed", compact, MAPPER.writeValueAsString(changed(json, random)), false));
+
+		// numbers written differently
+		StringBuilder numbers1 = new StringBuilder("[");
+		StringBuilder numbers2 = new StringBuilder("[");
+		for(int index = 0; index < 2000; index++) {
+			BigDecimal value = new BigDecimal(new BigInteger(80, random), random.nextInt(20)).subtract(BigDecimal.valueOf(random.nextInt()));
+			numbers1.append(index == 0 ? "" : ",").append(value.toPlainString());
+			numbers2.append(index == 0 ? "" : ", ").append(value.setScale(value.scale() + 2).toString());
+		}
+		String numbers = numbers1.append(']').toString();
+		corpus.add(new Case(Kind.JSON_NUMERIC, "json-numeric", numbers, numbers2.append(']').toString(), true));
+		corpus.add(new Case(Kind.JSON_NUMERIC, "json-numeric-changed", numbers, numbers.substring(0, numbers.lastIndexOf(',') + 1) + "0.5]", false));
+
+		// adversarial JSON - deep nesting, long escaped strings, many members
+		corpus.add(new Case(Kind.JSON, "json-deep", nested("[", "{\"a\":1,\"b\":[true]}", "]", 400), nested("[ ", "{\"b\":[true],\"a\":1}", " ]", 400), true));
+		corpus.add(new Case(Kind.JSON, "json-deep-changed", nested("[", "{\"a\":1}", "]", 400), nested("[", "{\"a\":2}", "]", 400), false));
+
+		String text = randomText(random, 100000);
+		corpus.add(new Case(Kind.JSON, "json-string", MAPPER.writeValueAsString(text), escapeAll(text), true));
+		corpus.add(new Case(Kind.JSON, "json-string-changed", MAPPER.writeValueAsString(text), MAPPER.writeValueAsString(text.substring(0, text.length() - 1) + "!"), false));
+
+		ObjectNode wide = NODES.objectNode();
+		for(int index = 0; index < 5000; index++) {
+			wide.put("key-" + Integer.toString(random.nextInt(), 36), random.nextLong());
+		}
+		corpus.add(new Case(Kind.JSON, "json-wide", MAPPER.writeValueAsString(wide), MAPPER.writeValueAsString(reordered(wide)), true));
+
+		// large XML - attributes reordered, empty elements and references written differently
+		corpus.add(new Case(Kind.XML, "xml-large", xmlCatalog(new Random(SEED), false, -1), xmlCatalog(new Random(SEED), true, -1), true));
+		corpus.add(new Case(Kind.XML, "xml-large-changed", xmlCatalog(new Random(SEED), false, -1), xmlCatalog(new Random(SEED), true, 150), false));
+
+		// adversarial XML - deep nesting, many attributes, long text
+		corpus.add(new Case(Kind.XML, "xml-deep", nested("<e>", "<leaf a=\"1\" b=\"2\"/>", "</e>", 500), nested("<e>", "<leaf b='2' a='1'></leaf>", "</e>", 500), true));
+		corpus.add(new Case(Kind.XML, "xml-deep-changed", nested("<e>", "<leaf a=\"1\"/>", "</e>", 500), nested("<e>", "<leaf a=\"2\"/>", "</e>", 500), false));
+		corpus.add(new Case(Kind.XML, "xml-attributes", "<e " + attributes(200, false, '"') + "/>", "<e " + attributes(200, true, '\'') + "/>", true));
+
+		String markupText = randomMarkupText(random, 50000);
+		corpus.add(new Case(Kind.XML, "xml-text", "<t><![CDATA[x]]>" + escapeMarkup(markupText, false) + "</t>", "<t><![CDATA[x]]>" + escapeMarkup(markupText, true) + "</t>", true));
+
+		// large HTML - attributes reordered, entities and empty elements written differently
+		corpus.add(new Case(Kind.HTML, "html-large", htmlTable(new Random(SEED), false, -1), htmlTable(new Random(SEED), true, -1), true));
+		corpus.add(new Case(Kind.HTML, "html-large-changed", htmlTable(new Random(SEED), false, -1), htmlTable(new Random(SEED), true, 120), false));
+
+		// adversarial HTML - deep nesting, attributes past the bit mask, supplementary references
+		corpus.add(new Case(Kind.HTML, "html-deep", nested("<div>", "<span id=\"x\" class=\"y\">z</span>", "</div>", 300), nested("<div>", "<span class=\"y\" id=\"x\">z</span>", "</div>", 300), true));
+		corpus.add(new Case(Kind.HTML, "html-deep-changed", nested("<div>", "<span>z</span>", "</div>", 300), nested("<div>", "<span>q</span>", "</div>", 300), false));
+		corpus.add(new Case(Kind.HTML, "html-attributes", "<p " + attributes(100, false, '"') + ">x</p>", "<p " + attributes(100, true, '"') + ">x</p>", true));
+		corpus.add(new Case(Kind.HTML, "html-attributes-changed", "<p " + attributes(100, false, '"') + ">x</p>", "<p " + attributes(100, true, '"').replace("v77", "v78") + ">x</p>", false));
+		corpus.add(new Case(Kind.HTML, "html-text", "<p>" + escapeMarkup(markupText, false) + "</p>", "<p>" + escapeMarkup(markupText, true) + "</p>", true));
+
+		return corpus;
+	}
+
+	/**
+	 * Add to the given cases the same comparisons run through the parallel,
+	 * executor-based and cached comparers.
+	 * 
+	 */
+	private static List<Case> withVariants(List<Case> corpus) {
+		List<Case> variants = new ArrayList<Case>(corpus);
+		for(Case test : corpus) {
+			for(Kind kind : test.kind.variants()) {
+				variants.add(new Case(kind, test.name + "@" + kind.name().toLowerCase(), test.input1, test.input2, test.expected));
+			}
+		}
+
+		return variants;
+	}
+
+	private static ObjectNode randomObject(Random random, int depth, int width) {
+		ObjectNode node = NODES.objectNode();
+		for(int index = 0; index < width; index++) {
+			node.set("member" + index + "-" + random.nextInt(1000), randomValue(random, depth - 1, width));
+		}
+
+		return node;
+	}
+
+	private static JsonNode randomValue(Random random, int depth, int width) {
+		// containers half of the time, while not too deep
+		int kind = depth > 0 && random.nextBoolean() ? 7 + random.nextInt(2) : random.nextInt(7);
+		switch(kind) {
+			case 0:
+				return NODES.numberNode(random.nextInt());
+
+			case 1:
+				return NODES.numberNode(random.nextLong());
+
+			case 2:
+				return NODES.numberNode(new BigInteger(100, random));
+
+			case 3:
+				return NODES.numberNode(random.nextDouble() * 1e10);
+
+			case 4:
+				return NODES.textNode(randomText(random, 40));
+
+			case 5:
+				return NODES.booleanNode(random.nextBoolean());
+
+			case 6:
+				return NODES.nullNode();
+
+			case 7:
+				ArrayNode array = NODES.arrayNode();
+				for(int index = 0; index < width; index++) {
+					array.add(randomValue(random, depth - 1, width));
+				}
+				return array;
+
+			default:
+				return randomObject(random, depth, width);
+		}
+	}
+
+	/**
+	 * Copy the given value with the members of all objects in reverse order.
+	 * 
+	 */
+	private static JsonNode reordered(JsonNode node) {
+		if(node.isObject()) {
+			List<Map.Entry<String, JsonNode>> members = new ArrayList<Map.Entry<String, JsonNode>>();
+			Iterator<Map.Entry<String, JsonNode>> iterator = node.fields();
+			while(iterator.hasNext()) {
+				members.add(iterator.next());
+			}
+			Collections.reverse(members);
+
+			ObjectNode copy = NODES.objectNode();
+			for(Map.Entry<String, JsonNode> member : members) {
+				copy.set(member.getKey(), reordered(member.getValue()));
+			}
+			return copy;
+		}
+
+		if(node.isArray()) {
+			ArrayNode copy = NODES.arrayNode();
+			for(JsonNode element : node) {
+				copy.add(reordered(element));
+			}
+			return copy;
+		}
+
+		return node;
+	}
+
+	/**
+	 * Copy the given object with one leaf, deep down, changed.
+	 * 
+	 */
+	private static JsonNode changed(JsonNode node, Random random) {
+		JsonNode copy = node.deepCopy();
+
+		JsonNode parent = copy;
+		while(true) {
+			List<String> names = new ArrayList<String>();
+			Iterator<String> iterator = parent.fieldNames();
+			while(iterator.hasNext()) {
+				names.add(iterator.next());
+			}
+
+			if(parent.isObject() && !names.isEmpty()) {
+				String name = names.get(random.nextInt(names.size()));
+				JsonNode child = parent.get(name);
+				if(!child.isContainerNode() || child.size() == 0) {
+					((ObjectNode) parent).put(name, "changed");
+					return copy;
+				}
+				parent = child;
+			} else {
+				int index = random.nextInt(parent.size());
+				JsonNode child = parent.get(index);
+				if(!child.isContainerNode() || child.size() == 0) {
+					((ArrayNode) parent).set(index, NODES.textNode("changed"));
+					return copy;
+				}
+				parent = child;
+			}
+		}
+	}
+
+	/**
+	 * Random text mixing ASCII, chars needing escapes, accented letters and
+	 * supplementary chars.
+	 * 
+	 */
+	private static String randomText(Random random, int length) {
+		String special = "\"\\/\b\f\n\r\t<>&'éü€";
+		StringBuilder builder = new StringBuilder(length);
+		while(builder.length() < length) {
+			int kind = random.nextInt(10);
+			if(kind < 6) {
+				builder.append((char) ('a' + random.nextInt(26)));
+			} else if(kind < 9) {
+				builder.append(special.charAt(random.nextInt(special.length())));
+			} else {
+				builder.appendCodePoint(0x1f600 + random.nextInt(50));
+			}
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Random text for markup, without control chars.
+	 * 
+	 */
+	private static String randomMarkupText(Random random, int length) {
+		return randomText(random, length).replaceAll("[\\x00-\\x1f]", " ");
+	}
+
+	/**
+	 * A JSON string with every char escaped as <code>\\uXXXX</code>.
+	 * 
+	 */
+	private static String escapeAll(String text) {
+		StringBuilder builder = new StringBuilder(text.length() * 6 + 2).append('"');
+		for(int index = 0; index < text.length(); index++) {
+			builder.append(String.format("\\u%04x", (int) text.charAt(index)));
+		}
+
+		return builder.append('"').toString();
+	}
+
+	/**
+	 * Escape text for markup, with references for the markup chars, and, when
+	 * <code>numeric</code> is set, numeric references for all chars past ASCII.
+	 * 
+	 */
+	private static String escapeMarkup(String text, boolean numeric) {
+		StringBuilder builder = new StringBuilder(text.length() * 2);
+		for(int index = 0; index < text.length(); index = text.offsetByCodePoints(index, 1)) {
+			int codePoint = text.codePointAt(index);
+			if(codePoint == '&') {
+				builder.append("&amp;");
+			} else if(codePoint == '<') {
+				builder.append("&lt;");
+			} else if(codePoint == '>') {
+				builder.append(numeric ? "&#62;" : "&gt;");
+			} else if(numeric && codePoint > 0x7f) {
+				builder.append("&#x").append(Integer.toHexString(codePoint)).append(';');
+			} else {
+				builder.appendCodePoint(codePoint);
+			}
+		}
+
+		return builder.toString();
+	}
+
+	private static String nested(String open, String inner, String close, int depth) {
+		StringBuilder builder = new StringBuilder();
+		for(int index = 0; index < depth; index++) {
+			builder.append(open);
+		}
+
+		builder.append(inner);
+		for(int index = 0; index < depth; index++) {
+			builder.append(close);
+		}
+
+		return builder.toString();
+	}
+
+	private static String attributes(int count, boolean reversed, char quote) {
+		StringBuilder builder = new StringBuilder();
+		for(int index = 0; index < count; index++) {
+			int attribute = reversed ? count - 1 - index : index;
+			builder.append(" a").append(attribute).append('=').append(quote).append('v').append(attribute).append(quote);
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * A catalog of items. The variant reorders attributes, quotes them
+	 * differently, writes empty elements with end tags and accented letters as
+	 * references; the item at <code>changedItem</code>, if any, gets another
+	 * price.
+	 * 
+	 */
+	private static String xmlCatalog(Random random, boolean variant, int changedItem) {
+		StringBuilder builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<catalog>");
+		for(int index = 0; index < 300; index++) {
+			int price = random.nextInt(100000);
+			String name = "Café " + Integer.toString(random.nextInt(), 36) + " & \"friends\" <" + index + ">";
+			if(index == changedItem) {
+				price++;
+			}
+
+			if(variant) {
+				builder.append("<item stock='").append(price % 7).append("' kind='k").append(index % 5).append("' id='").append(index).append("'>");
+				builder.append("<name>").append(escapeMarkup(name, true)).append("</name><price>").append(price).append("</price><note></note></item>");
+			} else {
+				builder.append("<item id=\"").append(index).append("\" kind=\"k").append(index % 5).append("\" stock=\"").append(price % 7).append("\">");
+				builder.append("<name>").append(escapeMarkup(name, false)).append("</name><price>").append(price).append("</price><note/></item>");
+			}
+		}
+
+		return builder.append("</catalog>").toString();
+	}
+
+	/**
+	 * A table of rows. The variant reorders attributes, writes accented letters
+	 * as named entities and empty elements as self-closing tags; the row at
+	 * <code>changedRow</code>, if any, gets another cell text.
+	 * 
+	 */
+	private static String htmlTable(Random random, boolean variant, int changedRow) {
+		StringBuilder builder = new StringBuilder("<html><head><title>Report</title></head><body><table>");
+		for(int index = 0; index < 200; index++) {
+			String cell = "Caf" + (variant ? "&eacute;" : "é") + " " + Integer.toString(random.nextInt(), 36) + " &amp; co";
+			if(index == changedRow) {
+				cell += ".";
+			}
+
+			if(variant) {
+				builder.append("<tr data-index=\"").append(index).append("\" class=\"row\"><td title=\"t").append(index).append("\">").append(cell).append("</td><td><hr/></td></tr>");
+			} else {
+				builder.append("<tr class=\"row\" data-index=\"").append(index).append("\"><td title=\"t").append(index).append("\">").append(cell).append("</td><td><hr></hr></td></tr>");
+			}
+		}
+
+		return builder.append("</table></body></html>").toString();
+	}
+
+	/**
+	 * A pair of documents and the expected result of comparing them
+	 * 
+	 */
+	private static final class Case {
+
+		private final Kind kind;
+
+		private final String name;
+
+		private final String input1;
+
+		private final String input2;
+
+		private final boolean expected;
+
+		Case(Kind kind, String name, String input1, String input2, boolean expected) {
+			this.kind = kind;
+			this.name = name;
+			this.input1 = input1;
+			this.input2 = input2;
+			this.expected = expected;
+		}
+
+		/**
+		 * Compare the documents.
+		 * 
+		 * @return a description of the failure, or <code>null</code> if the
+		 *         result is as expected
+		 */
+		String check() {
+			try {
+				boolean result = this.kind.compare(this.input1, this.input2);
+				if(result != this.expected) {
+					return this.name + ": expected " + this.expected + " but was " + result;
+				}
+
+				return null;
+			} catch(Exception e) {
+				return this.name + ": " + e;
+			}
+		}
+
+	}
+
+	private enum Kind {
+
+		HTML {
+
+			@Override
+			boolean compare(String input1, String input2) {
+				return HTMLComparer.compareHtml(input1, input2);
+			}
+
+			@Override
+			Kind[] variants() {
+				return new Kind[] { HTML_EXECUTOR, HTML_CACHED };
+			}
+
+		},
+
+		JSON {
+
+			@Override
+			boolean compare(String input1, String input2) throws Exception {
+				return JSONComparer.compareJson(input1, input2);
+			}
+
+			@Override
+			Kind[] variants() {
+				return new Kind[] { JSON_PARALLEL, JSON_EXECUTOR, JSON_CACHED };
+			}
+
+		},
+
+		JSON_NUMERIC {
+
+			@Override
+			boolean compare(String input1, String input2) throws Exception {
+				return JSONComparer.compareJsonNumerically(input1, input2);
+			}
+
+			@Override
+			Kind[] variants() {
+				return new Kind[] { JSON_PARALLEL, JSON_NUMERIC_CACHED };
+			}
+
+		},
+
+		XML {
+
+			@Override
+			boolean compare(String input1, String input2) throws Exception {
+				return XMLComparer.compareXml(input1, input2);
+			}
+
+			@Override
+			Kind[] variants() {
+				return new Kind[] { XML_EXECUTOR, XML_CACHED };
+			}
+
+		},
+
+		HTML_EXECUTOR {
+
+			@Override
+			boolean compare(String input1, String input2) {
+				return HTMLComparer.compareHtml(input1, input2, executor);
+			}
+
+		},
+
+		JSON_EXECUTOR {
+
+			@Override
+			boolean compare(String input1, String input2) throws Exception {
+				return JSONComparer.compareJson(input1, input2, executor);
+			}
+
+		},
+
+		XML_EXECUTOR {
+
+			@Override
+			boolean compare(String input1, String input2) throws Exception {
+				return XMLComparer.compareXml(input1, input2, executor);
+			}
+
+		},
+
+		JSON_PARALLEL {
+
+			@Override
+			boolean compare(String input1, String input2) throws Exception {
+				return JSONComparer.compareJsonNumericallyInParallel(input1, input2);
+			}
+
+		},
+
+		HTML_CACHED {
+
+			@Override
+			boolean compare(String input1, String input2) throws Exception {
+				return cache.compareHtml(input1, input2);
+			}
+
+		},
+
+		JSON_CACHED {
+
+			@Override
+			boolean compare(String input1, String input2) throws Exception {
+				return cache.compareJson(input1, input2);
+			}
+
+		},
+
+		JSON_NUMERIC_CACHED {
+
+			@Override
+			boolean compare(String input1, String input2) throws Exception {
+				return cache.compareJsonNumerically(input1, input2, 0);
+			}
+
+		},
+
+		XML_CACHED {
+
+			@Override
+			boolean compare(String input1, String input2) throws Exception {
+				return cache.compareXml(input1, input2);
+			}
+
+		};
+
+		abstract boolean compare(String input1, String input2) throws Exception;
+
+		/**
+		 * @return the other kinds running the same comparison
+		 */
+		Kind[] variants() {
+			return new Kind[0];
+		}
+
+	}
+
+}
@@ -0,0 +1,179 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ComparisonCache}.
+ * 
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class ComparisonCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testMemoryCache() throws Exception {
+		ComparisonCache cache = new ComparisonCache(2);
+
+		Assert.assertTrue(cache.compareJson("{ \"a\": 1 }", "{\"a\":1}"));
+		Assert.assertTrue(cache.compareJson("{ \"a\": 1 }", "{\"a\":1}"));
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+
+		// the options and the kind of comparison are part of the key
+		Assert.assertFalse(cache.compareJson("[1]", "[1.0]"));
+		Assert.assertTrue(cache.compareJsonNumerically("[1]", "[1.0]", 0));
+		Assert.assertTrue(cache.compareJsonNumerically("[1]", "[1.0]", 0));
+		Assert.assertFalse(cache.compareXml("<a>1</a>", "<a>2</a>"));
+		Assert.assertTrue(cache.compareHtml("<b>x</b>", " <b>x</b>"));
+
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(2, cache.getHits());
+		Assert.assertEquals(5, cache.getMisses());
+
+		// inputs are hashed with their lengths
+		Assert.assertFalse(cache.compareHtml("<b>x</b><i>", "</i>"));
+		Assert.assertFalse(cache.compareHtml("<b>x</b>", "<i></i>"));
+	}
+
+	@Test
+	public void testFileCache() throws Exception {
+		File file = new File(this.folder.getRoot(), "results.cache");
+
+		ComparisonCache cache = new ComparisonCache(10, file);
+		try {
+			for(int index = 0; index < 5000; index++) {
+				Assert.assertEquals(index % 3 == 0, cache.compareJson("[" + index + "]", index % 3 == 0 ? "[" + index + "]" : "[-1]"));
+			}
+
+			try {
+				new ComparisonCache(10, file);
+				Assert.fail("File in use was opened again");
+			} catch(IOException e) {
+				// expected
+			}
+		} finally {
+			cache.close();
+		}
+
+		cache = new ComparisonCache(10, file);
+		try {
+			for(int index = 0; index < 5000; index++) {
+				Assert.assertEquals(index % 3 == 0, cache.compareJson("[" + index + "]", index % 3 == 0 ? "[" + index + "]" : "[-1]"));
+			}
+
+			Assert.assertEquals(5000, cache.getHits());
+			Assert.assertEquals(0, cache.getMisses());
+		} finally {
+			cache.close();
+		}
+	}
+
+	@Test
+	public void testClosedCache() throws Exception {
+		File file = new File(this.folder.getRoot(), "closed.cache");
+
+		ComparisonCache cache = new ComparisonCache(10, file);
+		Assert.assertTrue(cache.compareJson("[1]", "[1]"));
+		cache.close();
+		cache.close();
+
+		try {
+			cache.compareJson("[2]", "[2]");
+			Assert.fail("Closed cache stored a result");
+		} catch(IOException e) {
+			// expected
+		}
+
+		cache = new ComparisonCache(10, file);
+		try {
+			Assert.assertTrue(cache.compareJson("[1]", "[1]"));
+			Assert.assertEquals(1, cache.getHits());
+		} finally {
+			cache.close();
+		}
+	}
+
+	@Test
+	public void testResultsVersion() throws Exception {
+		File file = new File(this.folder.getRoot(), "versioned.cache");
+
+		ComparisonCache cache = new ComparisonCache(10, file);
+		try {
+			Assert.assertTrue(cache.compareJson("[1]", "[1]"));
+		} finally {
+			cache.close();
+		}
+
+		// results of older comparers are discarded
+		RandomAccessFile raw = new RandomAccessFile(file, "rw");
+		try {
+			raw.seek(12);
+			raw.writeInt(ComparisonCache.RESULTS_VERSION - 1);
+		} finally {
+			raw.close();
+		}
+
+		cache = new ComparisonCache(10, file);
+		try {
+			Assert.assertTrue(cache.compareJson("[1]", "[1]"));
+			Assert.assertEquals(0, cache.getHits());
+			Assert.assertEquals(1, cache.getMisses());
+		} finally {
+			cache.close();
+		}
+
+		cache = new ComparisonCache(10, file);
+		try {
+			Assert.assertTrue(cache.compareJson("[1]", "[1]"));
+			Assert.assertEquals(1, cache.getHits());
+		} finally {
+			cache.close();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testForeignFile() throws Exception {
+		File file = this.folder.newFile("foreign.cache");
+		FileOutputStream stream = new FileOutputStream(file);
+		try {
+			stream.write(new byte[64]);
+		} finally {
+			stream.close();
+		}
+
+		new ComparisonCache(10, file);
+	}
+
+}
@@ -0,0 +1,143 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link ComparisonWatcher}.
+ * 
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class ComparisonWatcherTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Long enough for each write below to complete well within it
+	 */
+	private static final long DEBOUNCE_MILLIS = 500;
+
+	/**
+	 * Long enough for polling watch services, which may only notice changes
+	 * every few seconds
+	 */
+	private static final long TIMEOUT_SECONDS = 60;
+
+	@Test
+	public void testWatcher() throws Exception {
+		Path json = write("expected.json", "{ \"a\": 1 }");
+		Path jsonOutput = write("actual.json", "{\"a\":1}");
+		Path xml = write("expected.xml", "<a><b>1</b></a>");
+		Path xmlOutput = write("actual.xml", "<a><b>2</b></a>");
+
+		final BlockingQueue<String> results = new LinkedBlockingQueue<String>();
+		ComparisonWatcher watcher = new ComparisonWatcher(new ComparisonWatcher.Listener() {
+
+			@Override
+			public void compared(Path baseline, Path output, boolean equal) {
+				results.add(output.getFileName() + "=" + equal);
+			}
+
+			@Override
+			public void failed(Path baseline, Path output, Exception error) {
+				results.add(output.getFileName() + "=failed");
+			}
+
+		}, DEBOUNCE_MILLIS);
+
+		watcher.watch(json, jsonOutput);
+		watcher.watch(xml, xmlOutput);
+
+		Thread thread = new Thread(watcher);
+		thread.start();
+		try {
+			// all pairs are compared first
+			Assert.assertEquals("actual.json=true", results.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			Assert.assertEquals("actual.xml=false", results.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+			// only the changed pair is compared again
+			write("actual.xml", "<a><b>1</b></a>");
+			Assert.assertEquals("actual.xml=true", results.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+			write("actual.json", "{\"a\":");
+			Assert.assertEquals("actual.json=failed", results.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+			// a changed baseline is parsed again
+			write("expected.json", "{\"a\":2}");
+			Assert.assertEquals("actual.json=failed", results.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			write("actual.json", "{\"a\":2}");
+			Assert.assertEquals("actual.json=true", results.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+			// steady writes to another file do not hold back a quiet one
+			final Path other = this.folder.getRoot().toPath().resolve("other.log");
+			final CountDownLatch done = new CountDownLatch(1);
+			Thread writer = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						for(int index = 0; !done.await(DEBOUNCE_MILLIS / 5, TimeUnit.MILLISECONDS); index++) {
+							Files.write(other, String.valueOf(index).getBytes(StandardCharsets.UTF_8));
+						}
+					} catch(Exception e) {
+						// stop writing
+					}
+				}
+
+			});
+			writer.start();
+			try {
+				write("actual.xml", "<a><b>2</b></a>");
+				Assert.assertEquals("actual.xml=false", results.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			} finally {
+				done.countDown();
+				writer.join(10000);
+			}
+
+			Assert.assertNull(results.poll(3 * DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS));
+		} finally {
+			watcher.close();
+			thread.join(10000);
+		}
+
+		Assert.assertFalse(thread.isAlive());
+	}
+
+	private Path write(String name, String content) throws Exception {
+		return Files.write(this.folder.getRoot().toPath().resolve(name), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -21,6 +21,13 @@
 
 package com.sangupta.comparator;
 
+import java.io.ByteArrayInputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -34,4 +41,124 @@ public class HTMLComparerTest {
 		Assert.assertTrue(HTMLComparer.compareHtml(html1, html2));
 	}
 
+	@Test
+	public void testConcurrentHTMLComparer() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Assert.assertTrue(HTMLComparer.compareHtml("<b><i>Some</i><hr></hr> more</b>", " <b><i>Some</i><hr/> more</b>", executor));
+			Assert.assertFalse(HTMLComparer.compareHtml("<b><i>Some</i></b>", "<b><i>Other</i></b>", executor));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSliceHTMLComparer() throws Exception {
+		String html1 = "<b><i>Some</i><hr></hr> more</b>";
+		String html2 = " <b><i>Some</i><hr/> more</b>";
+		
+		char[] chars = (html1 + html2).toCharArray();
+		Assert.assertTrue(HTMLComparer.compareHtml(chars, 0, html1.length(), chars, html1.length(), html2.length()));
+		Assert.assertFalse(HTMLComparer.compareHtml(chars, 0, html1.length(), chars, html1.length(), 15));
+		
+		byte[] bytes = (html1 + html2).getBytes("UTF-8");
+		Assert.assertTrue(HTMLComparer.compareHtml(bytes, 0, html1.length(), bytes, html1.length(), html2.length()));
+		
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+		direct.position(html1.length());
+		Assert.assertTrue(HTMLComparer.compareHtml(ByteBuffer.wrap(bytes, 0, html1.length()), direct));
+	}
+
+	@Test
+	public void testHTMLEntities() {
+		Assert.assertTrue(HTMLComparer.compareHtml("<p title=\"a &amp; b\" class=\"x\">caf&eacute; &#x2014; &lt;ok&gt;</p>", "<p class=\"x\" title=\"a &#38; b\">caf\u00e9 \u2014 &lt;ok&gt;</p>"));
+		Assert.assertFalse(HTMLComparer.compareHtml("<p title=\"a &amp; b\">text</p>", "<p title=\"a &amp; c\">text</p>"));
+		Assert.assertFalse(HTMLComparer.compareHtml("<p title=\"a\" class=\"x\">text</p>", "<p title=\"a\" id=\"x\">text</p>"));
+		Assert.assertTrue(HTMLComparer.compareHtml("<div><input disabled><b>x</b></div>", "<div><input disabled><b>x</b></div>"));
+		Assert.assertTrue(HTMLComparer.compareHtml("<div><input disabled><b>x</b></div>", " <div><input  disabled><b>x</b></div>"));
+		
+		// repeated attributes must be repeated alike, values in the same order
+		Assert.assertTrue(HTMLComparer.compareHtml("<p class=\"a\" class=\"b\">x</p>", "<p class=\"a\" class=\"b\">x</p>"));
+		Assert.assertFalse(HTMLComparer.compareHtml("<p class=\"a\" class=\"a\">x</p>", "<p class=\"a\">x</p>"));
+		Assert.assertFalse(HTMLComparer.compareHtml("<p class=\"a\" class=\"b\">x</p>", "<p class=\"b\" class=\"a\">x</p>"));
+		Assert.assertTrue(HTMLEntities.equalsDecoded("&nbsp;&euro;&hearts;&quot;&apos;", "\u00a0\u20ac\u2665\"&apos;"));
+		
+		Assert.assertTrue(HTMLEntities.equalsDecoded("&lt;&#65;&#x42;&amp", "<AB&amp"));
+		Assert.assertTrue(HTMLEntities.equalsDecoded("&#128512; &thetasym;", "\ud83d\ude00 \u03d1"));
+		Assert.assertFalse(HTMLEntities.equalsDecoded("&#6A;", "j"));
+		Assert.assertFalse(HTMLEntities.equalsDecoded("&unknown;", "?"));
+	}
+
+	@Test
+	public void testElementText() {
+		Assert.assertTrue(HTMLComparer.compareHtml("<p>a  b\n</p>", "<p> a b</p>"));
+		Assert.assertFalse(HTMLComparer.compareHtml("<p>a&nbsp; b</p>", "<p>a b</p>"));
+		Assert.assertTrue(HTMLComparer.compareHtml("<div>a<p>b</p></div>", "<div>a <p>b</p></div>"));
+		Assert.assertFalse(HTMLComparer.compareHtml("<div>a<b>b</b></div>", "<div>a <b>b</b></div>"));
+		Assert.assertTrue(HTMLComparer.compareHtml("<div>x<script>1</script>y</div>", "<div>x<script>2</script>y</div>"));
+		Assert.assertTrue(HTMLComparer.compareHtml("<div>a\n&#128512;</div>", "<div>a \ud83d\ude00</div>"));
+	}
+
+	@Test
+	public void testConcurrentHTMLComparerCloses() throws Exception {
+		// neither parse starts, as the only thread of the executor is busy
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					release.await();
+				} catch(InterruptedException e) {
+					// done
+				}
+			}
+			
+		});
+		
+		final boolean[] closed = new boolean[2];
+		try {
+			Thread.currentThread().interrupt();
+			try {
+				HTMLComparer.compareHtml(new ByteArrayInputStream("<p>x</p>".getBytes("UTF-8")) {
+					
+					@Override
+					public void close() {
+						closed[0] = true;
+					}
+					
+				}, new ByteArrayInputStream("<p>x</p>".getBytes("UTF-8")) {
+					
+					@Override
+					public void close() {
+						closed[1] = true;
+					}
+					
+				}, executor);
+				Assert.fail("Interrupt was not reported");
+			} catch(InterruptedIOException e) {
+				Assert.assertTrue(Thread.interrupted());
+			}
+			
+			Assert.assertTrue(closed[0]);
+			Assert.assertTrue(closed[1]);
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testRawPreCheck() {
+		Assert.assertTrue(RawPreCheck.markupEquals(RawPreCheck.of("\n <b>x</b>\n"), RawPreCheck.of("<b>x</b>"), true));
+		Assert.assertFalse(RawPreCheck.markupEquals(RawPreCheck.of("\n <b>x</b>"), RawPreCheck.of("<b>x</b>"), false));
+		Assert.assertTrue(RawPreCheck.markupEquals(RawPreCheck.of("<a>x</a>\n"), RawPreCheck.of("<a>x</a>"), false));
+		Assert.assertFalse(RawPreCheck.markupEquals(RawPreCheck.of("<b>x </b>"), RawPreCheck.of("<b>x</b>"), true));
+		
+		char[] chars = " <p>x</p> <p>x</p>".toCharArray();
+		Assert.assertTrue(RawPreCheck.markupEquals(RawPreCheck.of(chars, 0, 9), RawPreCheck.of(chars, 9, 9), true));
+		Assert.assertTrue(HTMLComparer.compareHtml(chars, 0, 9, chars, 9, 9));
+	}
 }
@@ -0,0 +1,123 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for {@link JSONRecordComparer}.
+ * 
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class JSONRecordComparerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRecordComparer() throws Exception {
+		JSONRecordComparer comparer = new JSONRecordComparer("/id");
+
+		Assert.assertTrue(comparer.compare(new StringReader("{\"id\": 1, \"v\": \"a\"}\n{\"id\": 2, \"v\": \"b\"}"), new StringReader("[{\"v\": \"b\", \"id\": 2}, {\"id\": 1, \"v\": \"a\"}]")));
+		Assert.assertFalse(comparer.compare(new StringReader("{\"id\": 1, \"v\": \"a\"}\n{\"id\": 2, \"v\": \"b\"}"), new StringReader("{\"id\": 2, \"v\": \"a\"}\n{\"id\": 1, \"v\": \"b\"}")));
+		Assert.assertFalse(comparer.compare(new StringReader("{\"id\": 1}\n{\"id\": 2}"), new StringReader("{\"id\": 1}")));
+		Assert.assertFalse(comparer.compare(new StringReader("{\"id\": 1}\n{\"id\": 1}"), new StringReader("{\"id\": 1}\n{\"id\": 2}")));
+		Assert.assertFalse(comparer.compare(new StringReader("{\"id\": 1}"), new StringReader("{\"id\": \"1\"}")));
+		Assert.assertFalse(comparer.compare(new StringReader("{\"id\": 1}"), new StringReader("{\"key\": 1}")));
+	}
+
+	@Test
+	public void testSpilledRecords() throws Exception {
+		StringBuilder forward = new StringBuilder();
+		StringBuilder backward = new StringBuilder();
+		for(int index = 0; index < 5000; index++) {
+			forward.append("{\"meta\": {\"id\": ").append(index).append("}, \"value\": \"v").append(index).append("\"}\n");
+			backward.insert(0, "{\"value\": \"v" + index + "\", \"meta\": {\"id\": " + index + "}}\n");
+		}
+
+		JSONRecordComparer comparer = new JSONRecordComparer("/meta/id");
+		comparer.setMemoryBudget(1024);
+		comparer.setSpillDirectory(this.folder.getRoot());
+
+		Assert.assertTrue(comparer.compare(new StringReader(forward.toString()), new StringReader(backward.toString())));
+		Assert.assertFalse(comparer.compare(new StringReader(forward.toString()), new StringReader(backward.toString().replace("\"v4321\"", "\"w4321\""))));
+		Assert.assertFalse(comparer.compare(new StringReader(forward.toString()), new StringReader(backward.toString().replace("\"id\": 17}", "\"id\": 18}"))));
+
+		// run files are removed once done
+		Assert.assertEquals(0, this.folder.getRoot().list().length);
+	}
+
+	@Test
+	public void testDuplicateKeys() throws Exception {
+		String[][] duplicated = {
+				{ "{\"id\": \"a\"}\n{\"id\": \"k\"}\n{\"id\": \"k\"}\n{\"id\": \"b\"}", "{\"id\": \"b\"}\n{\"id\": \"a\"}\n{\"id\": \"k\"}\n{\"id\": \"k\"}" },
+				{ "{\"id\": \"k\"}\n{\"id\": \"k\"}", "{\"id\": \"k\"}\n{\"id\": \"k\"}" },
+				{ "{\"id\": \"k\"}\n{\"id\": \"x\"}\n{\"id\": \"y\"}\n{\"id\": \"k\"}", "{\"id\": \"k\"}\n{\"id\": \"x\"}\n{\"id\": \"y\"}\n{\"id\": \"z\"}" },
+				{ "{\"id\": \"k\"}\n{\"id\": \"x\"}", "{\"id\": \"x\"}\n{\"id\": \"k\"}\n{\"id\": \"k\"}" } };
+
+		// the same rule, whether records wait in memory or are spilled to disk
+		for(long budget : new long[] { Long.MAX_VALUE, 0 }) {
+			JSONRecordComparer comparer = new JSONRecordComparer("/id");
+			comparer.setMemoryBudget(budget);
+			comparer.setSpillDirectory(this.folder.getRoot());
+
+			for(String[] records : duplicated) {
+				Assert.assertFalse(comparer.compare(new StringReader(records[0]), new StringReader(records[1])));
+				Assert.assertFalse(comparer.compare(new StringReader(records[1]), new StringReader(records[0])));
+			}
+
+			Assert.assertTrue(comparer.compare(new StringReader("{\"id\": \"a\"}\n{\"id\": \"k\"}\n{\"id\": \"b\"}"), new StringReader("{\"id\": \"b\"}\n{\"id\": \"a\"}\n{\"id\": \"k\"}")));
+		}
+	}
+
+	@Test
+	public void testRecordFiles() throws Exception {
+		File file1 = write("one.json", "[{\"id\": \"x\", \"n\": [1, 2]}, {\"id\": \"y\", \"n\": []}]");
+		File file2 = write("two.json", "{\"id\": \"y\", \"n\": []}\n{\"id\": \"x\", \"n\": [1, 2]}\n");
+
+		Assert.assertTrue(JSONComparer.compareJsonRecords(file1, file2, "/id"));
+		Assert.assertFalse(JSONComparer.compareJsonRecords(file1, file2, "/key"));
+	}
+
+	private File write(String name, String content) throws Exception {
+		File file = this.folder.newFile(name);
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+
+		return file;
+	}
+
+}
@@ -21,10 +21,30 @@
 
 package com.sangupta.comparator;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
 /**
  * Unit tests for {@link JSONComparer} utility class.
  * 
@@ -41,4 +61,321 @@ public class JsonComparerTest {
 		Assert.assertTrue(JSONComparer.compareJsonQuietly("{ \"short_url\": \"http://drbl.in/hZx\", \"id\": 21 }", "{ \"id\": 21, \"short_url\": \"http://drbl.in/hZx\" }"));
 	}
 
+	@Test
+	public void testNumericJsonComparer() {
+		Assert.assertFalse(JSONComparer.compareJsonQuietly("[1, 2.5]", "[1.0, 25e-1]"));
+		Assert.assertTrue(JSONComparer.compareJsonNumericallyQuietly("[1, 2.5]", "[1.0, 25e-1]", 0));
+		Assert.assertTrue(JSONComparer.compareJsonNumericallyQuietly("{ \"a\": -0, \"b\": 12345678901234567890123 }", "{ \"b\": 1.2345678901234567890123e22, \"a\": 0.0 }", 0));
+		Assert.assertFalse(JSONComparer.compareJsonNumericallyQuietly("{ \"a\": 0.1, \"b\": 1 }", "{ \"b\": 1, \"a\": 0.10000001 }", 0));
+		Assert.assertTrue(JSONComparer.compareJsonNumericallyQuietly("{ \"a\": 0.1, \"b\": 1 }", "{ \"b\": 1, \"a\": 0.10000001 }", 1e-6));
+		Assert.assertFalse(JSONComparer.compareJsonNumericallyQuietly("{ \"a\": [1, 2] }", "{ \"a\": [1, 2, 3] }", 0));
+		Assert.assertFalse(JSONComparer.compareJsonNumericallyQuietly("{ \"a\": 1, \"b\": 2 }", "{ \"b\": 2, \"c\": 1 }", 0));
+
+		// reordered members, nested in reordered members
+		Assert.assertTrue(JSONComparer.compareJsonNumericallyQuietly("{ \"a\": { \"x\": 0.30000000000000000001, \"y\": [1e400] }, \"b\": 1, \"c\": 2 }",
+				"{ \"b\": 1.0, \"a\": { \"y\": [10e399], \"x\": 0.30000000000000000001 }, \"c\": 2 }", 0));
+		Assert.assertFalse(JSONComparer.compareJsonNumericallyQuietly("{ \"a\": { \"x\": 0.30000000000000000001, \"y\": 1 }, \"b\": 1 }",
+				"{ \"b\": 1, \"a\": { \"y\": 1, \"x\": 0.30000000000000000002 } }", 0));
+		Assert.assertFalse(JSONComparer.compareJsonNumericallyQuietly("{ \"a\": 1, \"b\": 2, \"c\": 3 }", "{ \"b\": 2, \"a\": 1 }", 0));
+		Assert.assertFalse(JSONComparer.compareJsonNumericallyQuietly("{ \"b\": 2, \"a\": 1 }", "{ \"a\": 1, \"b\": 2, \"c\": 3 }", 0));
+	}
+
+	@Test
+	public void testParallelJsonComparer() throws Exception {
+		StringBuilder builder = new StringBuilder("{ \"records\": [");
+		for(int index = 0; index < 20000; index++) {
+			if(index > 0) {
+				builder.append(',');
+			}
+			
+			builder.append("{ \"id\": ").append(index).append(", \"values\": [1, 2, 3] }");
+		}
+		builder.append("] }");
+		
+		String json = builder.toString();
+		String changed = json.replace("\"id\": 12345,", "\"id\": 12346,");
+		
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			Assert.assertTrue(JSONComparer.compareJsonNumericallyInParallel(json, new String(json), pool));
+			Assert.assertFalse(JSONComparer.compareJsonNumericallyInParallel(json, changed, pool));
+			Assert.assertTrue(JSONComparer.compareJsonNumericallyInParallel("[1, 2]", "[1.0, 2]", pool));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testConcurrentJsonComparer() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Assert.assertTrue(JSONComparer.compareJson("{ \"a\": [1, 2], \"b\": null }", "{\"b\":null,\"a\":[1,2]}", executor));
+			Assert.assertFalse(JSONComparer.compareJson("{ \"a\": [1, 2] }", "{ \"a\": [2, 1] }", executor));
+			Assert.assertFalse(JSONComparer.compareJson("[1, 2]", "{ \"a\": 1 }", executor));
+			Assert.assertTrue(JSONComparer.compareJson(new StringReader("[true]"), new StringReader(" [ true ] "), executor));
+			
+			try {
+				JSONComparer.compareJson("[1, 2]", "[1, 2", executor);
+				Assert.fail("Malformed JSON was not reported");
+			} catch(IOException e) {
+				// expected
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		// a failure of the second parse is reported while the first is still running
+		final CountDownLatch release = new CountDownLatch(1);
+		Reader blocked = new Reader() {
+			
+			@Override
+			public int read(char[] buffer, int offset, int length) throws IOException {
+				try {
+					release.await();
+				} catch(InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				
+				return -1;
+			}
+			
+			@Override
+			public void close() {
+				// nothing to release
+			}
+			
+		};
+		
+		executor = Executors.newFixedThreadPool(2);
+		try {
+			JSONComparer.compareJson(blocked, new StringReader("[1, 2"), executor);
+			Assert.fail("Malformed JSON was not reported");
+		} catch(IOException e) {
+			Assert.assertEquals(1, release.getCount());
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSliceJsonComparer() throws Exception {
+		String json1 = "{ \"a\": [1, 2], \"b\": null }";
+		String json2 = "{\"b\":null,\"a\":[1,2]}";
+		
+		byte[] bytes = ("xx" + json1 + json2).getBytes("UTF-8");
+		Assert.assertTrue(JSONComparer.compareJson(bytes, 2, json1.length(), bytes, 2 + json1.length(), json2.length()));
+		
+		char[] chars = "[1, 2][1,2][2,1]".toCharArray();
+		Assert.assertTrue(JSONComparer.compareJson(chars, 0, 6, chars, 6, 5));
+		Assert.assertFalse(JSONComparer.compareJson(chars, 0, 6, chars, 11, 5));
+		
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+		direct.position(2 + json1.length());
+		Assert.assertTrue(JSONComparer.compareJson(ByteBuffer.wrap(bytes, 2, json1.length()), direct));
+		Assert.assertEquals(2 + json1.length(), direct.position());
+	}
+
+	@Test
+	public void testConcurrentJsonComparerCloses() throws Exception {
+		// neither parse starts, as the only thread of the executor is busy
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					release.await();
+				} catch(InterruptedException e) {
+					// done
+				}
+			}
+			
+		});
+		
+		try {
+			ClosingStream stream1 = new ClosingStream("[1, 2]");
+			ClosingStream stream2 = new ClosingStream("[1, 2]");
+			Thread.currentThread().interrupt();
+			try {
+				JSONComparer.compareJson(stream1, stream2, executor);
+				Assert.fail("Interrupt was not reported");
+			} catch(InterruptedIOException e) {
+				Assert.assertTrue(Thread.interrupted());
+			}
+			
+			Assert.assertTrue(stream1.closed);
+			Assert.assertTrue(stream2.closed);
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+		
+		// the second parse never starts, as the first one fails
+		ClosingStream stream1 = new ClosingStream("[1, 2");
+		ClosingStream stream2 = new ClosingStream("[1, 2]");
+		InlineFirstExecutor inline = new InlineFirstExecutor();
+		try {
+			JSONComparer.compareJson(stream1, stream2, inline);
+			Assert.fail("Malformed JSON was not reported");
+		} catch(IOException e) {
+			// expected
+		}
+		
+		Assert.assertEquals(1, inline.held.size());
+		Assert.assertTrue(stream1.closed);
+		Assert.assertTrue(stream2.closed);
+	}
+	
+	/**
+	 * A stream remembering whether it was closed
+	 * 
+	 */
+	private static final class ClosingStream extends ByteArrayInputStream {
+		
+		private volatile boolean closed;
+		
+		ClosingStream(String text) {
+			super(text.getBytes());
+		}
+		
+		@Override
+		public void close() {
+			this.closed = true;
+		}
+		
+	}
+	
+	/**
+	 * An executor running the first task on the calling thread, and holding
+	 * all others without ever running them
+	 * 
+	 */
+	private static final class InlineFirstExecutor implements Executor {
+		
+		private final List<Runnable> held = new ArrayList<Runnable>();
+		
+		private boolean first = true;
+		
+		@Override
+		public void execute(Runnable task) {
+			if(this.first) {
+				this.first = false;
+				task.run();
+				return;
+			}
+			
+			this.held.add(task);
+		}
+		
+	}
+
+	@Test
+	public void testBinaryJsonComparer() throws Exception {
+		ObjectMapper mapper = new ObjectMapper();
+		JsonNode node = mapper.readTree("{ \"a\": [1, 2.5, 12345678901234567890], \"b\": \"text\", \"c\": { \"d\": null, \"e\": true } }");
+		JsonNode reordered = mapper.readTree("{ \"c\": { \"e\": true, \"d\": null }, \"b\": \"text\", \"a\": [1, 2.5, 12345678901234567890] }");
+		
+		ObjectMapper smile = new ObjectMapper(new SmileFactory());
+		ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+		
+		Assert.assertTrue(JSONComparer.compareSmile(smile.writeValueAsBytes(node), smile.writeValueAsBytes(reordered)));
+		Assert.assertTrue(JSONComparer.compareCbor(cbor.writeValueAsBytes(node), cbor.writeValueAsBytes(reordered)));
+		Assert.assertFalse(JSONComparer.compareCbor(cbor.writeValueAsBytes(node), cbor.writeValueAsBytes(mapper.readTree("{ \"a\": [1, 2.5] }"))));
+		
+		// mixed pairs
+		JsonFactory json = new JsonFactory();
+		byte[] text = mapper.writeValueAsBytes(reordered);
+		Assert.assertTrue(JSONComparer.compareJsonNumerically(json, text, smile.getFactory(), smile.writeValueAsBytes(node)));
+		Assert.assertTrue(JSONComparer.compareJsonNumerically(cbor.getFactory(), new ByteArrayInputStream(cbor.writeValueAsBytes(node)), json, new ByteArrayInputStream(text)));
+		Assert.assertTrue(JSONComparer.compareJsonNumerically(smile.getFactory(), smile.writeValueAsBytes(node), cbor.getFactory(), cbor.writeValueAsBytes(reordered)));
+		Assert.assertFalse(JSONComparer.compareJsonNumerically(json, "[1, 2]".getBytes("UTF-8"), cbor.getFactory(), cbor.writeValueAsBytes(new int[] { 1, 3 })));
+		
+		// binary values match their Base64 text
+		byte[] binary = { 1, 2, 3, (byte) 0xff };
+		Assert.assertTrue(JSONComparer.compareJsonNumerically(cbor.getFactory(), cbor.writeValueAsBytes(binary), json, mapper.writeValueAsBytes(binary)));
+		Assert.assertFalse(JSONComparer.compareJsonNumerically(cbor.getFactory(), cbor.writeValueAsBytes(binary), json, "\"AQID\"".getBytes("UTF-8")));
+		
+		// numbers are compared by value
+		Assert.assertTrue(JSONComparer.compareJsonNumerically(json, "[1.0, 2e0]".getBytes("UTF-8"), cbor.getFactory(), cbor.writeValueAsBytes(new int[] { 1, 2 })));
+		
+		// non-finite numbers equal only themselves
+		double[] special = { Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		float[] specialFloats = { Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		Assert.assertTrue(JSONComparer.compareSmile(smile.writeValueAsBytes(special), smile.writeValueAsBytes(special)));
+		Assert.assertTrue(JSONComparer.compareCbor(cbor.writeValueAsBytes(special), cbor.writeValueAsBytes(specialFloats)));
+		Assert.assertTrue(JSONComparer.compareJsonNumerically(smile.getFactory(), smile.writeValueAsBytes(special), cbor.getFactory(), cbor.writeValueAsBytes(special)));
+		Assert.assertFalse(JSONComparer.compareCbor(cbor.writeValueAsBytes(new double[] { Double.NaN }), cbor.writeValueAsBytes(new double[] { 1 })));
+		Assert.assertFalse(JSONComparer.compareCbor(cbor.writeValueAsBytes(new double[] { Double.POSITIVE_INFINITY }), cbor.writeValueAsBytes(new double[] { Double.NEGATIVE_INFINITY })));
+		Assert.assertTrue(JSONComparer.compareJsonNumerically(smile.getFactory().createParser(smile.writeValueAsBytes(special)), cbor.getFactory().createParser(cbor.writeValueAsBytes(special)), 0.5));
+		Assert.assertFalse(JSONComparer.compareJsonNumerically(smile.getFactory().createParser(smile.writeValueAsBytes(new double[] { Double.MAX_VALUE })), cbor.getFactory().createParser(cbor.writeValueAsBytes(new double[] { Double.POSITIVE_INFINITY })), Double.MAX_VALUE));
+	}
+
+	@Test
+	public void testRawPreCheck() throws Exception {
+		Assert.assertTrue(jsonEquals("{\"a\":[1,2],\"b\":\"x y\"}", "{ \"a\" : [ 1, 2 ],\n\t\"b\": \"x y\" }\n"));
+		Assert.assertTrue(jsonEquals("[true, \"\\\" \"]", "[true,\"\\\" \"]"));
+		
+		// whitespace within strings, or between tokens, is significant
+		Assert.assertFalse(jsonEquals("[\"x y\"]", "[\"xy\"]"));
+		Assert.assertFalse(jsonEquals("[\"\\\" \"]", "[\"\\\"\"]"));
+		Assert.assertFalse(jsonEquals("[1 2]", "[12]"));
+		Assert.assertFalse(jsonEquals("[1, 2]", "[1, 3]"));
+		
+		// line breaks end comments
+		Assert.assertFalse(jsonEquals("[1, // one\n 2]", "[1, // one 2]"));
+		
+		// whitespace is skipped in bytes of UTF-8 only
+		Assert.assertTrue(RawPreCheck.jsonEquals(bytes("[1, 2]", "UTF-8"), bytes("[1,2]", "UTF-8")));
+		Assert.assertFalse(RawPreCheck.jsonEquals(bytes("[1, 2]", "UTF-16LE"), bytes("[1,2]", "UTF-16LE")));
+		Assert.assertTrue(RawPreCheck.jsonEquals(bytes("[1, 2]", "UTF-16"), bytes("[1, 2]", "UTF-16")));
+		
+		Assert.assertTrue(JSONComparer.compareJson(ByteBuffer.wrap("[1, 2]".getBytes("UTF-8")), ByteBuffer.wrap("[1,2]".getBytes("UTF-8"))));
+		
+		// identical malformed text still fails
+		Assert.assertNull(JSONComparer.compareJsonQuietly("[1, 2", "[1, 2"));
+		Assert.assertNull(JSONComparer.compareJsonQuietly("[1, 2", "[1,  2"));
+		Assert.assertNull(JSONComparer.compareJsonQuietly("[\"\\q\"]", new String("[\"\\q\"]")));
+		Assert.assertNull(JSONComparer.compareJsonNumericallyQuietly("{\"a\" 1}", "{\"a\" 1}", 0));
+		byte[] malformed = "[1, 2".getBytes("UTF-8");
+		for(ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.wrap(malformed), ByteBuffer.allocateDirect(malformed.length).put(malformed) }) {
+			buffer.rewind();
+			try {
+				JSONComparer.compareJson(buffer, buffer.duplicate());
+				Assert.fail("Malformed JSON compared equal");
+			} catch(IOException e) {
+				// expected
+			}
+		}
+		
+		try {
+			JSONComparer.compareJson(malformed, 0, malformed.length, malformed, 0, malformed.length);
+			Assert.fail("Malformed JSON compared equal");
+		} catch(IOException e) {
+			// expected
+		}
+		
+		try {
+			JSONComparer.compareJsonNumericallyInParallel("[1, 2", "[1,  2");
+			Assert.fail("Malformed JSON compared equal");
+		} catch(IOException e) {
+			// expected
+		}
+		
+		Assert.assertTrue(JSONComparer.compareJsonNumericallyInParallel("[1, /* two */ 2]", "[1,/* two */2]"));
+	}
+	
+	private static boolean jsonEquals(String json1, String json2) {
+		boolean equal = RawPreCheck.jsonEquals(RawPreCheck.of(json1), RawPreCheck.of(json2));
+		Assert.assertEquals(equal, RawPreCheck.jsonEquals(RawPreCheck.of(json2), RawPreCheck.of(json1)));
+		Assert.assertEquals(equal, RawPreCheck.jsonEquals(RawPreCheck.of(json1.toCharArray(), 0, json1.length()), RawPreCheck.of(json2.toCharArray(), 0, json2.length())));
+		return equal;
+	}
+	
+	private static RawPreCheck.Text bytes(String json, String charset) throws Exception {
+		byte[] bytes = json.getBytes(charset);
+		return RawPreCheck.of(bytes, 0, bytes.length);
+	}
 }
@@ -0,0 +1,121 @@
+/**
+ *
+ * Comparator - Utility comparison classes
+ * Copyright (c) 2012, Sandeep Gupta
+ * 
+ * http://www.sangupta/projects/comparator
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.sangupta.comparator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Mismatch}, and for its Java 9 layer in the
+ * multi-release jar.
+ *
+ * @author sangupta
+ * @since 0.9.1
+ */
+public class MismatchTest {
+
+	private static final String VERSIONED_CLASS = "META-INF/versions/9/com/sangupta/comparator/Mismatch.class";
+
+	@Test
+	public void testMismatch() throws Exception {
+		assertMismatches(Mismatch.class);
+	}
+
+	@Test
+	public void testVersionedMismatch() throws Exception {
+		boolean java9 = !System.getProperty("java.specification.version").startsWith("1.");
+		Assume.assumeTrue(java9);
+
+		// the class path is not read as a multi-release jar, so the layer is loaded on its own
+		InputStream stream = MismatchTest.class.getClassLoader().getResourceAsStream(VERSIONED_CLASS);
+		Assert.assertNotNull("Java 9 layer was not compiled", stream);
+
+		final byte[] bytes;
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for(int read = stream.read(buffer); read >= 0; read = stream.read(buffer)) {
+				out.write(buffer, 0, read);
+			}
+
+			bytes = out.toByteArray();
+		} finally {
+			stream.close();
+		}
+
+		Class<?> versioned = new ClassLoader(null) {
+
+			@Override
+			protected Class<?> findClass(String name) throws ClassNotFoundException {
+				if(!name.equals(Mismatch.class.getName())) {
+					throw new ClassNotFoundException(name);
+				}
+
+				return defineClass(name, bytes, 0, bytes.length);
+			}
+
+		}.loadClass(Mismatch.class.getName());
+
+		Assert.assertNotSame(Mismatch.class, versioned);
+		assertMismatches(versioned);
+	}
+
+	private static void assertMismatches(Class<?> mismatch) throws Exception {
+		Method bytesMismatch = mismatch.getDeclaredMethod("mismatch", byte[].class, int.class, byte[].class, int.class, int.class);
+		Method charsMismatch = mismatch.getDeclaredMethod("mismatch", char[].class, int.class, char[].class, int.class, int.class);
+		bytesMismatch.setAccessible(true);
+		charsMismatch.setAccessible(true);
+
+		Random random = new Random(42);
+		for(int length = 0; length < 100; length++) {
+			byte[] bytes1 = new byte[length + 3];
+			random.nextBytes(bytes1);
+			byte[] bytes2 = new byte[length + 5];
+			System.arraycopy(bytes1, 3, bytes2, 5, length);
+
+			char[] chars1 = new char[length + 3];
+			char[] chars2 = new char[length + 5];
+			for(int index = 0; index < length; index++) {
+				chars1[3 + index] = chars2[5 + index] = (char) random.nextInt();
+			}
+
+			Assert.assertEquals(-1, bytesMismatch.invoke(null, bytes1, 3, bytes2, 5, length));
+			Assert.assertEquals(-1, charsMismatch.invoke(null, chars1, 3, chars2, 5, length));
+
+			if(length > 0) {
+				int index = random.nextInt(length);
+				bytes2[5 + index] ^= 1;
+				chars2[5 + index] ^= 0x100;
+
+				Assert.assertEquals(index, bytesMismatch.invoke(null, bytes1, 3, bytes2, 5, length));
+				Assert.assertEquals(index, charsMismatch.invoke(null, chars1, 3, chars2, 5, length));
+			}
+		}
+	}
+
+}
@@ -1,8 +1,16 @@
 package com.sangupta.comparator;
 
+import java.io.ByteArrayInputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
+import org.xml.sax.SAXException;
 
 public class XMLComparerTest {
 	
@@ -17,6 +25,133 @@ public class XMLComparerTest {
 		Assert.assertFalse(XMLComparer.compareXmlQuietly("<hello />", "<hello> </hello>"));
 		
 		Assert.assertTrue(XMLComparer.compareXmlQuietly("<hello mode=\"test\" />", "<hello mode=\"test\"></hello>"));
+		
+		// identical malformed documents still fail
+		Assert.assertNull(XMLComparer.compareXmlQuietly("<hello>", "<hello>"));
+		Assert.assertNull(XMLComparer.compareXmlQuietly("<hello>", "<hello>\n"));
+		Assert.assertTrue(XMLComparer.compareXmlQuietly("<hello />", "<hello />\n"));
+	}
+
+	@Test
+	public void testParallelXMLComparer() throws Exception {
+		StringBuilder builder = new StringBuilder("<records>");
+		for(int index = 0; index < 5000; index++) {
+			builder.append("<record id=\"").append(index).append("\"><name>n").append(index).append("</name></record>");
+		}
+		builder.append("</records>");
+		
+		String xml = builder.toString();
+		
+		Assert.assertTrue(XMLComparer.compareXmlInParallel(xml, new String(xml)));
+		Assert.assertFalse(XMLComparer.compareXmlInParallel(xml, xml.replace("<name>n4321</name>", "<name>m4321</name>")));
+		Assert.assertFalse(XMLComparer.compareXmlInParallel(xml, xml.replace("id=\"17\"", "id=\"18\"")));
+		Assert.assertFalse(XMLComparer.compareXmlInParallel("<hello />", "<hello> </hello>"));
+	}
+
+	@Test
+	public void testConcurrentXMLComparer() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Assert.assertTrue(XMLComparer.compareXml("<hello mode=\"test\" />", "<hello mode=\"test\"></hello>", executor));
+			Assert.assertFalse(XMLComparer.compareXml("<hello />", "<hello> </hello>", executor));
+			Assert.assertFalse(XMLComparer.compareXml("<hello />", "<world />", executor));
+			
+			// root names differ, but a malformed document is still an error
+			try {
+				XMLComparer.compareXml("<hello />", "<world>", executor);
+				Assert.fail("Malformed XML was not reported");
+			} catch(SAXException e) {
+				// expected
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		Assert.assertEquals("hello", XMLComparer.getRootElementName("<?xml version=\"1.0\"?><!-- a > b --><!DOCTYPE hello SYSTEM \"x>y\"><hello/>"));
+		Assert.assertEquals("x:hello", XMLComparer.getRootElementName("\n<x:hello xmlns:x=\"urn:x\">"));
+		Assert.assertNull(XMLComparer.getRootElementName("<!DOCTYPE hello [ <!ENTITY e \"<world/>\"> ]><hello/>"));
+	}
+
+	@Test
+	public void testConcurrentXMLComparerCloses() throws Exception {
+		// neither parse starts, as the only thread of the executor is busy
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		executor.execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					release.await();
+				} catch(InterruptedException e) {
+					// done
+				}
+			}
+			
+		});
+		
+		final boolean[] closed = new boolean[2];
+		try {
+			Thread.currentThread().interrupt();
+			try {
+				XMLComparer.compareXml(new ByteArrayInputStream("<hello />".getBytes("UTF-8")) {
+					
+					@Override
+					public void close() {
+						closed[0] = true;
+					}
+					
+				}, new ByteArrayInputStream("<hello />".getBytes("UTF-8")) {
+					
+					@Override
+					public void close() {
+						closed[1] = true;
+					}
+					
+				}, executor);
+				Assert.fail("Interrupt was not reported");
+			} catch(InterruptedIOException e) {
+				Assert.assertTrue(Thread.interrupted());
+			}
+			
+			Assert.assertTrue(closed[0]);
+			Assert.assertTrue(closed[1]);
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSliceXMLComparer() throws Exception {
+		String xml1 = "<hello mode=\"test\" />";
+		String xml2 = "<hello mode=\"test\"></hello>";
+		
+		byte[] bytes = (xml1 + xml2).getBytes("UTF-8");
+		Assert.assertTrue(XMLComparer.compareXml(bytes, 0, xml1.length(), bytes, xml1.length(), xml2.length()));
+		
+		char[] chars = "<hello /><hello> </hello>".toCharArray();
+		Assert.assertFalse(XMLComparer.compareXml(chars, 0, 9, chars, 9, 16));
+		
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).flip();
+		direct.position(xml1.length());
+		Assert.assertTrue(XMLComparer.compareXml(ByteBuffer.wrap(bytes, 0, xml1.length()).asReadOnlyBuffer(), direct));
+		
+		byte[] malformed = "<hello>".getBytes("UTF-8");
+		try {
+			XMLComparer.compareXml(malformed, 0, malformed.length, malformed, 0, malformed.length);
+			Assert.fail("Malformed XML compared equal");
+		} catch(SAXException e) {
+			// expected
+		}
+		
+		try {
+			XMLComparer.compareXml(ByteBuffer.wrap(malformed), ByteBuffer.wrap(malformed));
+			Assert.fail("Malformed XML compared equal");
+		} catch(SAXException e) {
+			// expected
+		}
 	}
 
 }